@@ -0,0 +1,188 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * Tries every dice and pip cascade in {@code res/newMethod}, with a range of detection parameters, on a labeled recording. Then saves the fastest combination that is accurate enough as
+ * {@code res/classifier.properties}, which the classifier loads on startup.
+ * <p>
+ * Usage: {@code CascadeTuner <recording dir> [accuracy, default 0.95] [output, default res/classifier.properties]}. Run it from the repository root, with the OpenCV native library on
+ * java.library.path.
+ * <p>
+ * The recording is a directory of images, such as the ones saved into {@code rawImg/}, and a {@code labels.txt} in it with one line per image: the file name, then the pips of every die in the
+ * image from left to right, separated by spaces. Images without a label are ignored, and lines starting with # are comments.
+ * <p>
+ * A die counts as read correctly if the right number of dice was found, and it has the right number of pips. Dice found beyond the labeled ones count as false positives.
+ * <p>
+ */
+public class CascadeTuner {
+	private static final double[]	DICE_SCALE_FACTORS	= { 1.05, 1.1, 1.2 };
+	private static final int[]		DICE_MIN_NEIGHBORS	= { 3, 4, 5 };
+	private static final double[]	PIP_SCALE_FACTORS	= { 1.01, 1.05, 1.1 };
+	private static final int[]		PIP_MIN_NEIGHBORS	= { 3, 4, 5 };
+	private static final int		WARMUP_FRAMES		= 5;
+	
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: CascadeTuner <recording dir> [accuracy] [output]");
+			System.exit(2);
+		}
+		
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+		double bar = (args.length > 1) ? Double.parseDouble(args[1]) : 0.95;
+		String output = (args.length > 2) ? args[2] : ClassifierConfig.FILE;
+		
+		// Every image is decoded up front, so that reading files doesn't end up in the timings.
+		List<Mat> frames = new ArrayList<>();
+		List<int[]> labels = new ArrayList<>();
+		for (String line : Files.readAllLines(Paths.get(args[0], "labels.txt"), StandardCharsets.UTF_8)) {
+			String[] fields = line.trim().split("\\s+");
+			if (fields[0].isEmpty() || fields[0].startsWith("#"))
+				continue;
+			
+			Mat frame = Imgcodecs.imread(new File(args[0], fields[0]).getPath());
+			if (frame.empty()) {
+				System.err.println("Could not read " + fields[0] + ", skipping it.");
+				continue;
+			}
+			
+			int[] pips = new int[fields.length - 1];
+			for (int i = 0; i < pips.length; i++)
+				pips[i] = Integer.parseInt(fields[i + 1]);
+			frames.add(frame);
+			labels.add(pips);
+		}
+		if (frames.isEmpty()) {
+			System.err.println("No labeled images in " + args[0]);
+			System.exit(2);
+		}
+		
+		// Sizes stay as they are; they depend on how far the camera is from the dice, not on the model.
+		Properties current = ClassifierConfig.load().toProperties();
+		ClassifierConfig best = null;
+		Result bestResult = null;
+		System.out.println(String.format("%d labeled frames", frames.size()));
+		System.out.println(" ms/frame  accuracy  false pos  configuration");
+		
+		for (String diceCascade : cascades("diceCascade"))
+			for (double diceScale : DICE_SCALE_FACTORS)
+				for (int diceNeighbors : DICE_MIN_NEIGHBORS)
+					for (String pipCascade : cascades("pipCascade"))
+						for (double pipScale : PIP_SCALE_FACTORS)
+							for (int pipNeighbors : PIP_MIN_NEIGHBORS) {
+								Properties p = new Properties();
+								p.putAll(current);
+								p.setProperty("dice.cascade", diceCascade);
+								p.setProperty("dice.scaleFactor", String.valueOf(diceScale));
+								p.setProperty("dice.minNeighbors", String.valueOf(diceNeighbors));
+								p.setProperty("pip.cascade", pipCascade);
+								p.setProperty("pip.scaleFactor", String.valueOf(pipScale));
+								p.setProperty("pip.minNeighbors", String.valueOf(pipNeighbors));
+								ClassifierConfig config = new ClassifierConfig(p);
+								
+								Result r = evaluate(new Classifier(DiceConfig.DEFAULT, config), frames, labels);
+								System.out.println(String.format("%9.2f  %7.1f%%  %8.1f%%  %s", r.msPerFrame, r.accuracy * 100, r.falsePositives * 100, config));
+								if (bestResult == null || r.isBetterThan(bestResult, bar)) {
+									best = config;
+									bestResult = r;
+								}
+							}
+		
+		if (bestResult.accuracy < bar)
+			System.out.println(String.format("Nothing reached %.1f%% accuracy, so the most accurate was picked.", bar * 100));
+		System.out.println("Picked: " + best);
+		best.save(output, String.format("Picked by CascadeTuner: %.2f ms/frame, %.1f%% of dice read correctly, %.1f%% false positives", bestResult.msPerFrame, bestResult.accuracy * 100,
+				bestResult.falsePositives * 100));
+		System.out.println("Saved to " + output);
+	}
+	
+	/**
+	 * @param prefix
+	 * @return every cascade in res/newMethod whose name starts with prefix, in order.
+	 */
+	private static String[] cascades(String prefix) {
+		File[] files = new File("res/newMethod").listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".xml"));
+		if (files == null || files.length == 0)
+			throw new IllegalStateException("No " + prefix + " in res/newMethod. Run this from the repository root.");
+		
+		Arrays.sort(files);
+		String[] paths = new String[files.length];
+		for (int i = 0; i < files.length; i++)
+			paths[i] = "res/newMethod/" + files[i].getName();
+		return paths;
+	}
+	
+	/**
+	 * Reads every frame once, and compares the result to the labels.
+	 */
+	private static Result evaluate(Classifier cl, List<Mat> frames, List<int[]> labels) {
+		for (int i = 0; i < Math.min(WARMUP_FRAMES, frames.size()); i++)
+			cl.readDice(frames.get(i));
+		
+		long labeled = 0, correct = 0, found = 0, extra = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < frames.size(); i++) {
+			int[] expected = labels.get(i);
+			int[] actual = cl.readDice(frames.get(i));
+			
+			labeled += expected.length;
+			found += actual.length;
+			extra += Math.max(0, actual.length - expected.length);
+			if (actual.length == expected.length) // Otherwise there's no telling which die is which
+				for (int d = 0; d < actual.length; d++)
+					if (actual[d] == expected[d])
+						correct++;
+		}
+		
+		Result r = new Result();
+		r.msPerFrame = (System.nanoTime() - start) / 1e6 / frames.size();
+		r.accuracy = (labeled > 0) ? (double) correct / labeled : 0;
+		r.falsePositives = (found > 0) ? (double) extra / found : 0;
+		return r;
+	}
+	
+	private static class Result {
+		double	msPerFrame;
+		double	accuracy;
+		double	falsePositives;
+		
+		/**
+		 * Anything accurate enough beats anything that isn't. Among those that are, the fastest wins. Among those that aren't, the most accurate does.
+		 */
+		boolean isBetterThan(Result other, double bar) {
+			boolean good = accuracy >= bar;
+			if (good != (other.accuracy >= bar))
+				return good;
+			return good ? msPerFrame < other.msPerFrame : accuracy > other.accuracy;
+		}
+	}
+}
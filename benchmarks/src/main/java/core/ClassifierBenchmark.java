@@ -0,0 +1,87 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dice and pip detection on a recorded session. Needs the OpenCV native library on java.library.path, and a recording to play back, e.g.
+ * {@code -p recording=rawImg}. The recording is reopened whenever it runs out of frames.
+ * <p>
+ * Without OpenCV, this benchmark fails during setup and JMH carries on with the rest.
+ * <p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.library.path=opencv3.1/build/java/x64")
+public class ClassifierBenchmark {
+	@Param("recording.avi")
+	private String		recording;
+	
+	@Param({ "1", "0.75" })
+	private double		scale;
+	
+	@Param({ "false", "true" })
+	private boolean		equalize;
+	
+	private Classifier	cl;
+	
+	@Setup
+	public void setup() {
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME); // Fails the benchmark straight away if OpenCV isn't installed
+		cl = new Classifier();
+		cl.setPreprocessing(scale, equalize);
+		cl.openVC(recording);
+		if (!cl.isVCConnected())
+			throw new IllegalStateException("Could not open " + recording);
+	}
+	
+	@TearDown
+	public void tearDown() {
+		cl.closeVC();
+	}
+	
+	@Benchmark
+	public Mat getNextImage() {
+		Mat image = cl.getNextImage();
+		if (image.empty()) { // End of the recording, start over
+			cl.closeVC();
+			cl.openVC(recording);
+			image = cl.getNextImage();
+		}
+		
+		return image;
+	}
+}
@@ -0,0 +1,76 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Turning the five dice read by {@code Classifier} into a dictionary line number. {@code mainDecode} is the original string-based conversion from {@code Main.setPassphraseWord}, kept as a
+ * baseline for {@code RollDecoder}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiceDecodeBenchmark {
+	private Map<Integer, Integer>	data	= new HashMap<>();
+	private int[]					faces	= { 3, 6, 1, 4, 2 };
+	private long					packed	= RollDecoder.pack(faces);
+	
+	@Setup
+	public void setup() {
+		data.put(0, 3);
+		data.put(1, 6);
+		data.put(2, 1);
+		data.put(3, 4);
+		data.put(4, 2);
+	}
+	
+	/**
+	 * Copy of the decoding formerly in {@code Main.setPassphraseWord}.
+	 */
+	@Benchmark
+	public int mainDecode() {
+		int value = (data.get(0) - 1) * 10000 + (data.get(1) - 1) * 1000 + (data.get(2) - 1) * 100 + (data.get(3) - 1) * 10 + data.get(4) - 1;
+		return Integer.valueOf(Integer.toString(Integer.parseInt(Integer.toString(value), 6), 10));
+	}
+	
+	@Benchmark
+	public int rollDecoder() {
+		return RollDecoder.decode(faces, 6);
+	}
+	
+	@Benchmark
+	public int rollDecoderPacked() {
+		return RollDecoder.decode(packed, faces.length, 6);
+	}
+}
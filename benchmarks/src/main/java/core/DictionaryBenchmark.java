@@ -0,0 +1,60 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Word lookups, for every dictionary type. Walks through every dice value in turn, so the whole word list is touched.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DictionaryBenchmark {
+	@Param({ "DICT_NORMAL", "DICT_SPECIAL", "DICT_NUMBERS" })
+	private DICTIONARY			dict;
+	
+	private PasswordGenerator	pg;
+	private int					value;
+	
+	@Setup
+	public void setup() {
+		pg = new PasswordGenerator();
+		pg.loadDicts();
+	}
+	
+	@Benchmark
+	public String getWord() {
+		value = (value + 1) % pg.getCardinality();
+		return pg.getWord(dict, value);
+	}
+}
@@ -0,0 +1,104 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dictionary generation and the functions run on every generated passphrase.
+ * <p>
+ * Note that {@code generateDict} overwrites the dictionaries in res/, exactly like the "Generate new Dictionary" button does.
+ * <p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerationBenchmark {
+	private static final char[]	SPECIAL_CHARS	= "~!@#$%^&*()_+-={}:\"<>?[];',./".toCharArray();
+	private static final String	PASSWORD		= "zokor    )=#-}'    609953    Freyja    regula";
+	
+	private PasswordGenerator	pg;
+	private EntropyCalculator	entropy;
+	private Path				scratch;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		pg = new PasswordGenerator();
+		pg.loadDicts();
+		entropy = pg.getEntropyCalculator();
+		scratch = Files.createTempFile("specialDict", ".txt");
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(scratch);
+	}
+	
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void generateDict() {
+		pg.generateDict(true, true);
+	}
+	
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public boolean createSpecialDict() {
+		return pg.createSpecialDict(SPECIAL_CHARS, scratch.toString());
+	}
+	
+	@Benchmark
+	public String getDictHash() {
+		return pg.getDictHash();
+	}
+	
+	@Benchmark
+	public boolean verifyDictHash() {
+		return pg.verifyDictHash();
+	}
+	
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@SuppressWarnings("deprecation")
+	public String getPassStrength() {
+		return pg.getPassStrength(PASSWORD);
+	}
+	
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public double getPhraseBits() {
+		return entropy.getPhraseBits(5, 1, 1);
+	}
+}
@@ -0,0 +1,118 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two JMH runs saved with {@code -rf csv}, and fails if any benchmark got slower than allowed.
+ * <p>
+ * Usage: {@code RegressionGate <baseline.csv> <current.csv> [max regression in percent, default 10]}. Exits with 1 if a benchmark regressed, or 2 if one from the baseline is missing.
+ * <p>
+ */
+public class RegressionGate {
+	
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: RegressionGate <baseline.csv> <current.csv> [max regression %]");
+			System.exit(2);
+		}
+		
+		double maxRegression = (args.length > 2) ? Double.parseDouble(args[2]) : 10;
+		Map<String, String[]> baseline = read(args[0]);
+		Map<String, String[]> current = read(args[1]);
+		
+		int status = 0;
+		for (Map.Entry<String, String[]> entry : baseline.entrySet()) {
+			String[] before = entry.getValue();
+			String[] after = current.get(entry.getKey());
+			if (after == null) {
+				System.out.println(String.format("MISSING  %s", entry.getKey()));
+				status = Math.max(status, 2);
+				continue;
+			}
+			
+			double old = Double.parseDouble(before[4]);
+			double now = Double.parseDouble(after[4]);
+			
+			// Throughput: higher is better. Every other mode measures time: lower is better.
+			double change = before[1].equals("thrpt") ? (old - now) / old * 100 : (now - old) / old * 100;
+			boolean failed = change > maxRegression;
+			if (failed)
+				status = Math.max(status, 1);
+			
+			System.out.println(String.format("%s %+7.1f%%  %s  (%s -> %s %s)", failed ? "FAIL" : "ok  ", change, entry.getKey(), before[4], after[4], after[6]));
+		}
+		
+		System.exit(status);
+	}
+	
+	/**
+	 * Reads a JMH CSV result file.
+	 * 
+	 * @param file
+	 * @return the rows, keyed by benchmark name, mode and parameters.
+	 * @throws IOException
+	 */
+	private static Map<String, String[]> read(String file) throws IOException {
+		Map<String, String[]> rows = new LinkedHashMap<>();
+		List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+		
+		for (int i = 1; i < lines.size(); i++) { // Skip the header
+			if (lines.get(i).isEmpty())
+				continue;
+			
+			String[] row = split(lines.get(i));
+			StringBuilder key = new StringBuilder(row[0]).append(" [").append(row[1]).append(']');
+			for (int y = 7; y < row.length; y++) // Anything after the unit is a @Param value
+				key.append(' ').append(row[y]);
+			rows.put(key.toString(), row);
+		}
+		
+		return rows;
+	}
+	
+	/**
+	 * Splits a CSV line, taking quotes into account.
+	 */
+	private static String[] split(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '"')
+				quoted = !quoted;
+			else if (c == ',' && !quoted) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else
+				field.append(c);
+		}
+		fields.add(field.toString());
+		
+		return fields.toArray(new String[fields.size()]);
+	}
+}
@@ -0,0 +1,237 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.io.BufferedWriter;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Command-line entry point for generating passphrases in bulk, without the GUI or a webcam.
+ */
+public class BatchInit {
+	private static final String USAGE = "Usage: BatchInit [options]\n"
+			+ "  -n, --count <n>        number of passphrases to generate (default 1)\n"
+			+ "  -w, --words <n>        minimum phrase length (default 5)\n"
+			+ "  -s, --special <n>      number of special character words (default 1)\n"
+			+ "  -d, --numbers <n>      number of number words (default 1)\n"
+			+ "  -o, --output <file>    write to a file instead of stdout\n"
+			+ "      --separator <str>  placed between words (default a single space)\n"
+			+ "  -t, --threads <n>      number of worker threads (default one per core)\n"
+			+ "      --dice <dice>      dice rolled per word, e.g. 6d6 or 4d20 (default 5d6)\n"
+			+ "      --source <file>    word list to generate dictionaries from\n"
+			+ "      --sp-length <n>    characters per special character and number word (default 6), with --new-dict\n"
+			+ "      --sp-size <n>      words in the special character and number dictionaries, with --new-dict\n"
+			+ "      --new-dict         generate new dictionaries before starting\n"
+			+ "      --entropy          follow each passphrase with a tab and its bits of entropy\n"
+			+ "      --min-entropy <n>  refuse to generate passphrases with fewer bits of entropy than this\n"
+			+ "      --metrics <file>   write timings for dictionary building and generation to a file";
+	
+	public static void main(String[] args) {
+		long count = 1;
+		int words = 5;
+		int special = 1;
+		int numbers = 1;
+		String output = null;
+		String separator = " ";
+		boolean newDict = false;
+		DiceConfig dice = DiceConfig.DEFAULT;
+		String source = null;
+		int spLength = 0;
+		int spSize = 0;
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean annotate = false;
+		double minEntropy = 0;
+		String metrics = null;
+		
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+					case "-n":
+					case "--count":
+						count = Long.parseLong(args[++i]);
+						break;
+					case "-w":
+					case "--words":
+						words = Integer.parseInt(args[++i]);
+						break;
+					case "-s":
+					case "--special":
+						special = Integer.parseInt(args[++i]);
+						break;
+					case "-d":
+					case "--numbers":
+						numbers = Integer.parseInt(args[++i]);
+						break;
+					case "-o":
+					case "--output":
+						output = args[++i];
+						break;
+					case "--separator":
+						separator = args[++i];
+						break;
+					case "-t":
+					case "--threads":
+						threads = Integer.parseInt(args[++i]);
+						break;
+					case "--dice":
+						dice = DiceConfig.parse(args[++i]);
+						break;
+					case "--source":
+						source = args[++i];
+						break;
+					case "--sp-length":
+						spLength = Integer.parseInt(args[++i]);
+						break;
+					case "--sp-size":
+						spSize = Integer.parseInt(args[++i]);
+						break;
+					case "--new-dict":
+						newDict = true;
+						break;
+					case "--entropy":
+						annotate = true;
+						break;
+					case "--min-entropy":
+						minEntropy = Double.parseDouble(args[++i]);
+						break;
+					case "--metrics":
+						metrics = args[++i];
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+			
+			if (count < 0 || words < 0 || special < 0 || numbers < 0)
+				throw new IllegalArgumentException("Counts cannot be negative");
+			if (threads < 1)
+				throw new IllegalArgumentException("Need at least one thread");
+			if ((spLength > 0 || spSize > 0) && !newDict) // They only describe dictionaries that are about to be made
+				throw new IllegalArgumentException("--sp-length and --sp-size need --new-dict");
+		} catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) { // NumberFormatException is an IllegalArgumentException
+			System.err.println((e instanceof ArrayIndexOutOfBoundsException) ? "Missing value for " + args[args.length - 1] : e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		
+		if (metrics != null)
+			Metrics.setEnabled(true); // Before anything is timed, including --new-dict
+			
+		PasswordGenerator pg = new PasswordGenerator(dice);
+		try {
+			if (source != null)
+				pg.setSourceDict(source);
+			if (spLength > 0)
+				pg.setSpecialWordLength(spLength);
+			if (spSize > 0)
+				pg.setSpecialDictSize(spSize);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+		
+		if (newDict && !pg.generateDict(true, true))
+			System.exit(1);
+		if (!pg.loadDicts()) // Whatever went wrong has been printed already, so there's no need for a stack trace from the first lookup.
+			System.exit(1);
+			
+		// Every passphrase in a batch is made the same way, so they all have the same entropy.
+		double bits = 0;
+		if (annotate || minEntropy > 0) {
+			try {
+				bits = pg.getEntropyCalculator().getPhraseBits(words, special, numbers);
+			} catch (IllegalStateException e) {
+				System.err.println(e.getMessage());
+				System.exit(1);
+			}
+			if (bits < minEntropy) {
+				System.err.println(String.format("These settings only give %.1f bits of entropy, but at least %.1f are required. Use more words.", bits, minEntropy));
+				System.exit(1);
+			}
+		}
+		
+		try (Writer file = (output != null) ? Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)
+				: new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+				Writer out = annotate ? new AnnotatingWriter(file, String.format("\t%.1f", bits)) : file) {
+			if (threads == 1)
+				new PassphraseService(pg).generate(count, words, special, numbers, separator, out);
+			else
+				new BulkGenerator(pg, threads).generate(count, words, special, numbers, separator, out);
+		} catch (IOException | IllegalStateException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+		
+		if (metrics != null) {
+			try {
+				Metrics.writeTo(metrics);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Puts the same text at the end of every line.
+	 */
+	private static class AnnotatingWriter extends FilterWriter {
+		private final String annotation;
+		
+		AnnotatingWriter(Writer out, String annotation) {
+			super(out);
+			this.annotation = annotation;
+		}
+		
+		@Override
+		public void write(int c) throws IOException {
+			if (c == '\n')
+				out.write(annotation);
+			out.write(c);
+		}
+		
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			int start = off;
+			for (int i = off; i < off + len; i++) {
+				if (cbuf[i] == '\n') {
+					out.write(cbuf, start, i - start);
+					out.write(annotation);
+					start = i;
+				}
+			}
+			out.write(cbuf, start, off + len - start);
+		}
+		
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			int start = off;
+			for (int i = str.indexOf('\n', off); i >= 0 && i < off + len; i = str.indexOf('\n', i + 1)) {
+				out.write(str, start, i - start);
+				out.write(annotation);
+				start = i;
+			}
+			out.write(str, start, off + len - start);
+		}
+	}
+}
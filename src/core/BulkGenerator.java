@@ -0,0 +1,155 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Generates large numbers of passphrases across several threads.
+ * <p>
+ * The requested count is cut into chunks, and each chunk is generated into its own buffer by a worker thread. Every worker has its own {@code PassphraseService} and random number generator, and
+ * they all share the same (read-only) dictionaries, so the workers never wait on each other. The calling thread writes the finished chunks out in order, so the output looks the same as a single
+ * threaded run.
+ * <p>
+ */
+public class BulkGenerator {
+	private static final int	CHUNK_SIZE			= 4096;		// Passphrases per chunk
+	private static final int	CHUNKS_PER_THREAD	= 4;		// How far the workers may run ahead of the writer
+	private static final int	RESEED_INTERVAL		= 64;		// Chunks between each worker reseeding its generator
+	
+	private PasswordGenerator	pg;
+	private int					threads;
+	
+	/**
+	 * @param pg
+	 *            generator whose dictionaries the words are taken from
+	 * @param threads
+	 *            number of worker threads
+	 */
+	public BulkGenerator(PasswordGenerator pg, int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Need at least one thread");
+		
+		this.pg = pg;
+		this.threads = threads;
+	}
+	
+	/**
+	 * Generates many passphrases, and writes them one per line.
+	 * <p>
+	 * 
+	 * @param count
+	 *            number of passphrases to generate
+	 * @param minSize
+	 *            minimum phrase length
+	 * @param numSp
+	 *            number of special character "words"
+	 * @param numNum
+	 *            number of number "words"
+	 * @param separator
+	 *            written between the words of a passphrase
+	 * @param out
+	 *            destination of the passphrases. Only ever written to from the calling thread.
+	 * @throws IOException
+	 *             if the writer fails
+	 * @throws IllegalStateException
+	 *             if the dictionaries are missing and could not be generated
+	 */
+	public void generate(long count, int minSize, int numSp, int numNum, String separator, Writer out) throws IOException {
+		if (!pg.loadDicts()) // Load everything up front, so the workers only ever read the dictionaries.
+			throw new IllegalStateException("The dictionaries could not be loaded");
+		
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+			@Override
+			protected Worker initialValue() {
+				return new Worker();
+			}
+		};
+		
+		Queue<Future<StringBuilder>> pending = new ArrayDeque<>();
+		try {
+			long remaining = count;
+			while (remaining > 0 || !pending.isEmpty()) {
+				// Keep the workers busy, but don't let them get too far ahead of the writer or we'd be holding the whole output in memory.
+				while (remaining > 0 && pending.size() < threads * CHUNKS_PER_THREAD) {
+					final int size = (int) Math.min(remaining, CHUNK_SIZE);
+					remaining -= size;
+					pending.add(pool.submit(() -> workers.get().generate(size, minSize, numSp, numNum, separator)));
+				}
+				
+				out.append(pending.remove().get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while generating", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof UncheckedIOException)
+				throw ((UncheckedIOException) e.getCause()).getCause();
+			throw new IOException("Worker failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Creates the random number generator for a worker. Prefers the NIST SP 800-90A DRBG where the JRE has one (Java 9+), and falls back on the platform default otherwise.
+	 * 
+	 * @return a newly seeded generator
+	 */
+	private static SecureRandom newRandom() {
+		try {
+			return SecureRandom.getInstance("DRBG");
+		} catch (NoSuchAlgorithmException e) {
+			return new SecureRandom();
+		}
+	}
+	
+	/**
+	 * Per-thread state. Never shared, so nothing in here needs to be synchronized.
+	 */
+	private class Worker {
+		private SecureRandom		rnd		= newRandom();
+		private PassphraseService	service	= new PassphraseService(pg, rnd);
+		private int					chunks	= 0;
+		
+		private StringBuilder generate(int size, int minSize, int numSp, int numNum, String separator) {
+			// Periodically mix fresh entropy into the generator, on top of whatever reseeding the algorithm does on its own.
+			if (++chunks % RESEED_INTERVAL == 0)
+				rnd.setSeed(rnd.generateSeed(32));
+			
+			StringBuilder sb = new StringBuilder(size * 64);
+			try {
+				service.generate(size, minSize, numSp, numNum, separator, sb);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e); // Can't happen with a StringBuilder
+			}
+			
+			return sb;
+		}
+	}
+}
@@ -0,0 +1,51 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+
+/**
+ * Frames from a live video device.
+ */
+public class CameraSource implements FrameSource {
+	private VideoCapture	vc	= new VideoCapture();
+	
+	/**
+	 * @param device
+	 *            Video device id to be used. ID is rather arbitrary, but if only one video device is presented, use 0.
+	 */
+	public CameraSource(int device) {
+		vc.open(device);
+	}
+	
+	@Override
+	public boolean read(Mat frame) {
+		return vc.read(frame);
+	}
+	
+	@Override
+	public boolean isOpened() {
+		return vc.isOpened();
+	}
+	
+	@Override
+	public void close() {
+		vc.release();
+	}
+}
@@ -0,0 +1,208 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import org.opencv.core.Mat;
+
+/**
+ * Runs the livestream as three separate stages, so that a slow stage doesn't hold up the others:
+ * <p>
+ * 1. A capture thread reads frames from the camera into a small ring buffer. If the buffer is full, the oldest frame is thrown away.<br>
+ * 2. A detection thread takes the newest frame (throwing away any older ones, as they're stale by now), runs the classifier on it, and hands the result to the panel, which copies it into its off-screen image.<br>
+ * 3. The Swing event thread paints the panel's on-screen image. Repaints are coalesced, so if the event thread falls behind, it only ever paints the newest result.
+ * <p>
+ * There's only one detection thread, as the classifier keeps per-frame state.
+ * <p>
+ */
+public class CapturePipeline {
+	private static final int						DEFAULT_CAPACITY	= 2;
+																		
+	private final Classifier						cl;
+	private final VideoPanel						panel;
+	private final Mat[]								ring;
+	private final MatPool							pool;
+	private int										head				= 0;	// Index of the oldest frame
+	private int										count				= 0;
+	private long									droppedFrames		= 0;
+	private final Object							lock				= new Object();
+																		
+	private volatile boolean						running;
+	private Thread									captureThread;
+	private Thread									detectThread;
+													
+	/**
+	 * @param cl
+	 *            classifier that reads and processes the frames
+	 * @param panel
+	 *            where the processed frames are shown
+	 */
+	public CapturePipeline(Classifier cl, VideoPanel panel) {
+		this(cl, panel, DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * @param cl
+	 *            classifier that reads and processes the frames
+	 * @param panel
+	 *            where the processed frames are shown
+	 * @param capacity
+	 *            number of frames that may wait for detection
+	 */
+	public CapturePipeline(Classifier cl, VideoPanel panel, int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Need room for at least one frame");
+		
+		this.cl = cl;
+		this.panel = panel;
+		this.ring = new Mat[capacity];
+		this.pool = new MatPool(capacity + 2); // Enough for a full ring, plus the frames being captured and detected
+	}
+	
+	/**
+	 * Starts the capture and detection threads.
+	 */
+	public synchronized void start() {
+		if (running)
+			return;
+		
+		running = true;
+		captureThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				captureLoop();
+			}
+		}, "capture");
+		detectThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				detectLoop();
+			}
+		}, "detection");
+		
+		// Daemons, so that they don't keep the program alive once the window is closed.
+		captureThread.setDaemon(true);
+		detectThread.setDaemon(true);
+		captureThread.start();
+		detectThread.start();
+	}
+	
+	/**
+	 * Stops both threads, and releases any frames still waiting for detection.
+	 */
+	public synchronized void stop() {
+		running = false;
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+		
+		try {
+			if (captureThread != null)
+				captureThread.join();
+			if (detectThread != null)
+				detectThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		synchronized (lock) {
+			while (count > 0)
+				pool.recycle(poll());
+		}
+		pool.clear();
+	}
+	
+	/**
+	 * Returns the number of frames that were thrown away because detection couldn't keep up.
+	 * 
+	 * @return number of dropped frames
+	 */
+	public long getDroppedFrames() {
+		synchronized (lock) {
+			return droppedFrames;
+		}
+	}
+	
+	private void captureLoop() {
+		while (running) {
+			Mat frame = pool.acquire();
+			if (!cl.grabFrame(frame)) {
+				// Camera isn't connected (yet). Don't spin on it.
+				pool.recycle(frame);
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					return;
+				}
+				continue;
+			}
+			
+			synchronized (lock) {
+				if (count == ring.length) {
+					pool.recycle(poll());
+					droppedFrames++;
+				}
+				ring[(head + count) % ring.length] = frame;
+				count++;
+				lock.notifyAll();
+			}
+		}
+	}
+	
+	private void detectLoop() {
+		while (running) {
+			Mat frame;
+			synchronized (lock) {
+				while (count == 0 && running) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (!running)
+					return;
+				
+				// Only the newest frame is worth detecting on.
+				while (count > 1) {
+					pool.recycle(poll());
+					droppedFrames++;
+				}
+				frame = poll();
+			}
+			
+			try {
+				panel.render(cl.detect(frame));
+			} catch (Exception e) {
+				e.printStackTrace(); // A bad frame shouldn't kill the livestream.
+			} finally {
+				pool.recycle(frame);
+			}
+		}
+	}
+	
+	/**
+	 * Removes the oldest frame from the ring. Must hold {@code lock}.
+	 */
+	private Mat poll() {
+		Mat frame = ring[head];
+		ring[head] = null;
+		head = (head + 1) % ring.length;
+		count--;
+		return frame;
+	}
+}
@@ -17,8 +17,19 @@
 
 package core;
 
-import java.util.HashMap;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfRect;
@@ -29,15 +40,81 @@ import org.opencv.core.Size;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 import org.opencv.objdetect.CascadeClassifier;
-import org.opencv.videoio.VideoCapture;
 
 public class Classifier {
-	private CascadeClassifier		diceCascade	= new CascadeClassifier("res/newMethod/diceCascade.xml");
-	private CascadeClassifier		pipCascade	= new CascadeClassifier("res/newMethod/pipCascade6.xml");
-	private VideoCapture			vc			= new VideoCapture();
+	private final ClassifierConfig	config;
+	private CascadeClassifier		diceCascade;
+	private static final Rect[]		NO_PIPS		= new Rect[0];	// Also used for no dice
+	private CascadeClassifier		pipCascade;
+	private FrameSource				source;
+	private Object					sourceLock	= new Object();	// Frames are grabbed on a different thread than they're detected on
 	private Mat						image;
+	private Mat						frame		= new Mat();	// Reused by getNextImage
+																
+	// Reused on every frame, rather than allocating new ones (and their native memory) for each detection.
+	private MatOfRect				diceDetections	= new MatOfRect();
+	private MatOfRect				pipDetections	= new MatOfRect();
+	private Point					startingPoint	= new Point();
+	private Point					endingPoint		= new Point();
+	private Point					center			= new Point();
+	private Size					axes			= new Size();
+													
+	private FramePreprocessor		preprocessor	= new FramePreprocessor(1, false);
+	private Rect					captureRegion;	// Where the dice can land, in frame coordinates. Null for the whole frame.
+	private Size					diceMinSize;	// In the working image
+	private Size					diceMaxSize;
+	private DiceTracker				tracker;
+	private int[]					trackedSlots;
+	private ExecutorService			pipExecutor;
+	private ThreadLocal<PipWorker>	pipWorkers		= new ThreadLocal<>();
+													
+	private static final Scalar		DICE_COLOR		= new Scalar(255, 255, 0);
+	private static final Scalar		PIP_COLOR		= new Scalar(255, 0, 255);
+	private static final Scalar		REGION_COLOR	= new Scalar(0, 255, 0);
+	
+	private static final Metrics.Histogram	CAPTURE_TIME	= Metrics.timer("classifier.capture");
+	private static final Metrics.Histogram	DICE_TIME		= Metrics.timer("classifier.diceCascade");
+	private static final Metrics.Histogram	PIP_TIME		= Metrics.timer("classifier.pipCascade");
+	private static final Metrics.Histogram	DICE_PER_FRAME	= Metrics.histogram("classifier.dicePerFrame");
+	private static final Metrics.Counter	MISREADS		= Metrics.counter("classifier.misreads");
+									
+	private Map<Integer, Integer>	data		= new ConcurrentHashMap<>();	// Read from the GUI while the pipeline writes to it
+	private volatile RollConsensus	consensus;	// Swapped by setConsensus while the GUI may be reading it
+	private DiceConfig				dice;
 									
-	private Map<Integer, Integer>	data		= new HashMap<>();
+	/**
+	 * Reads the classic five six-sided dice.
+	 */
+	public Classifier() {
+		this(DiceConfig.DEFAULT);
+	}
+	
+	/**
+	 * Uses the cascades and parameters saved in {@code res/classifier.properties}, or the defaults if there isn't one.
+	 * 
+	 * @param dice
+	 *            the dice that are rolled, which sets how many dice are read and how many pips a face may have
+	 */
+	public Classifier(DiceConfig dice) {
+		this(dice, ClassifierConfig.load());
+	}
+	
+	/**
+	 * @param dice
+	 *            the dice that are rolled, which sets how many dice are read and how many pips a face may have
+	 * @param config
+	 *            the cascades to use, and their parameters
+	 */
+	public Classifier(DiceConfig dice, ClassifierConfig config) {
+		this.dice = dice;
+		this.config = config;
+		diceCascade = new CascadeClassifier(config.getDiceCascade());
+		pipCascade = new CascadeClassifier(config.getPipCascade());
+		diceMinSize = config.getDiceMinSize();
+		diceMaxSize = config.getDiceMaxSize();
+		captureRegion = config.getCaptureRegion();
+		setConsensus(5, 0.8);
+	}
 												
 	/**
 	 * Uses the classifier to detect and highlight ROIs (Region of Interest) from an existing image.
@@ -76,7 +153,30 @@ public class Classifier {
 	 *            Video device id to be used. ID is rather arbitrary, but if only one video device is presented, use 0.
 	 */
 	public void openVC(int i) {
-		vc.open(i);
+		open(new CameraSource(i));
+	}
+	
+	/**
+	 * Opens a recorded session for detection, in place of a live device. Frames are read as fast as they are asked for, rather than at the speed they were recorded at.
+	 * 
+	 * @param file
+	 *            Location of the recording: a video, an image sequence such as {@code img%04d.png}, or a directory of PNG images such as {@code rawImg/}
+	 */
+	public void openVC(String file) {
+		open(new File(file).isDirectory() ? new ImageDirectorySource(file, 0) : new VideoFileSource(file, false));
+	}
+	
+	/**
+	 * Switches detection over to another source of frames, closing the current one.
+	 * 
+	 * @param newSource
+	 */
+	public void open(FrameSource newSource) {
+		synchronized (sourceLock) {
+			if (source != null)
+				source.close();
+			source = newSource;
+		}
 	}
 	
 	/**
@@ -85,7 +185,10 @@ public class Classifier {
 	 * @see openVC
 	 */
 	public void closeVC() {
-		vc.release();
+		synchronized (sourceLock) {
+			if (source != null)
+				source.close();
+		}
 	}
 	
 	/**
@@ -93,7 +196,9 @@ public class Classifier {
 	 * @return boolean
 	 */
 	public boolean isVCConnected() {
-		return vc.isOpened();
+		synchronized (sourceLock) {
+			return source != null && source.isOpened();
+		}
 	}
 	
 	/**
@@ -101,8 +206,9 @@ public class Classifier {
 	 */
 	public void captureRawImg() {
 		Mat image = new Mat();
-		vc.read(image);
+		grabFrame(image);
 		Imgcodecs.imwrite("rawImg/imageraw" + System.currentTimeMillis() + ".png", image);
+		image.release();
 	}
 	
 	/**
@@ -115,85 +221,480 @@ public class Classifier {
 	
 	/**
 	 * Reads the livestream, then detects the desired features. Then stores valid data. Note that if invalid data is supplied, then it copies the previous value.
+	 * <p>
+	 * The same matrix is reused on every call, so it is only valid until the next call.
+	 * <p>
 	 * 
 	 * @return an OpenCV matrix of our image.
 	 */
-	public Mat getNextImage() {
-		image = new Mat();
-		vc.read(image); // Sets the matrix to the current livestream frame.
+	public synchronized Mat getNextImage() {
+		grabFrame(frame); // Sets the matrix to the current livestream frame. Reuses the matrix's buffer when the size doesn't change.
 		
-		MatOfRect diceDetections = new MatOfRect(); // Essentially an array of locations where our dice features were detected. (Stupid wrappers)
-		
-		// Note that detectMultiScale has thrown an unknown exception before (literally, unknown). This is to prevent crashing.
-		try {
-			diceCascade.detectMultiScale(image, diceDetections, 1.1, 4, 0, new Size(20, 20), new Size(38, 38));
-		} catch (Exception e) {
-			e.printStackTrace();
+		return detect(frame);
+	}
+	
+	/**
+	 * Reads the next frame of the livestream, without any detection. May be called from a different thread than {@code detect}.
+	 * 
+	 * @param frame
+	 *            matrix the frame is read into
+	 * @return false if no frame could be read
+	 */
+	public boolean grabFrame(Mat frame) {
+		long start = Metrics.now();
+		boolean read;
+		synchronized (sourceLock) {
+			read = source != null && source.read(frame);
 		}
 		
-		// Debug, used for console output
-		String curDetect = "";
+		CAPTURE_TIME.recordSince(start);
+		return read;
+	}
+	
+	/**
+	 * Detects the desired features in a frame, and draws them onto it. Then stores valid data. Note that if invalid data is supplied, then it copies the previous value.
+	 * 
+	 * @param frame
+	 *            a frame read by {@code grabFrame}
+	 * @return the same matrix, with the detections drawn on it.
+	 */
+	public synchronized Mat detect(Mat frame) {
+		if (frame.empty()) // Nothing was read, e.g. the recording is over
+			return frame;
+			
+		// Only the capture region is searched. The view shares the frame's pixels, so everything drawn on it ends up in the right place on the frame.
+		image = regionOf(frame);
+		
+		// The dice are found in the (possibly smaller) grayscale working image, then mapped back onto the frame.
+		Mat working = preprocessor.process(image);
+		Rect[] diceRects = (tracker != null) ? trackDice(working) : detectDice(working);
+		int[] slots = (tracker != null) ? trackedSlots : null; // Which data slot each die goes in. Without tracking, it's just the detection order.
+		for (int i = 0; i < diceRects.length; i++)
+			diceRects[i] = preprocessor.toFull(diceRects[i]);
+		
+		/*
+		 * Now this is interesting. We essentially create a sub-array of the image, with our dice ROI as the image. Then we perform the detection on the image. This gives us the relative positions of
+		 * our pip ROIs to the dice ROI. Later on, we can draw the circles around the pip ROI, with the centers' positions adjusted by adding the dice ROI positions, so that it renders properly. This
+		 * is an amazing trick, as it not only eliminates false positives in non-dice ROIs, but it reduces how many pixels the classifier has to analyze to only at most 38 x 38 pixels (because of the
+		 * size restraints provided while detecting dice ROIs). This means we can set the precision to an insane level, without performance loss.
+		 * 
+		 * All the pips are detected before anything is drawn, so that the markup doesn't end up in the ROIs.
+		 */
+		Rect[][] allPips = detectPips(preprocessor.getGray(), diceRects);
+		DICE_PER_FRAME.record(diceRects.length);
 		
 		// Iterates for every Dice ROI
-		for (int i = 0; i < diceDetections.toArray().length; i++) {
+		for (int i = 0; i < diceRects.length; i++) {
 			
-			Rect diceRect = diceDetections.toArray()[i];
+			Rect diceRect = diceRects[i];
 			
 			// Draws rectangles around our detected ROI
-			Point startingPoint = new Point(diceRect.x, diceRect.y);
-			Point endingPoint = new Point(diceRect.x + diceRect.width, diceRect.y + diceRect.height);
-			Imgproc.rectangle(image, startingPoint, endingPoint, new Scalar(255, 255, 0));
-			
-			MatOfRect pipDetections = new MatOfRect();
-			
-			try {
-				/*
-				 * Now this is interesting. We essentially create a sub-array of the image, with our dice ROI as the image. Then we perform the detection on the image. This gives us the relative
-				 * positions of our pip ROIs to the dice ROI. Later on, we can draw the circles around the pip ROI, with the centers' positions adjusted by adding the dice ROI positions, so that it
-				 * renders properly. This is an amazing trick, as it not only eliminates false positives in non-dice ROIs, but it reduces how many pixels the classifier has to analyze to only at most
-				 * 38 x 38 pixels (because of the size restraints provided while detecting dice ROIs). This means we can set the precision to an insane level, without performance loss.
-				 */
-				pipCascade.detectMultiScale(image.submat(diceRect), pipDetections, 1.01, 4, 0, new Size(2, 2), new Size(10, 10));
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
+			startingPoint.x = diceRect.x;
+			startingPoint.y = diceRect.y;
+			endingPoint.x = diceRect.x + diceRect.width;
+			endingPoint.y = diceRect.y + diceRect.height;
+			Imgproc.rectangle(image, startingPoint, endingPoint, DICE_COLOR);
 			
 			// Gets the number of detected pips and draws a cricle around the ROI
+			Rect[] pipRects = allPips[i];
 			int numPips = 0;
-			for (int y = 0; y < pipDetections.toArray().length; y++) {
-				Rect pipRect = pipDetections.toArray()[y]; // Provides the relative position of the pips to the dice ROI
+			for (int y = 0; y < pipRects.length; y++) {
+				Rect pipRect = pipRects[y]; // Provides the relative position of the pips to the dice ROI
 				/*
 				 * Finds the absolute center of a pip. diceRect.x and diceRect.y provides the top-left position of the dice ROI. pipRect.x and pipRect.y provides the top-left position of the pip ROI.
 				 * Normally, to find a center of an object with size (w, h) with the top-left point (x, y), we divide the width and height by two, and then add on the x pos to the width and y pos to
 				 * the height. Now, since pipDetections only provide relative positioning to the dice ROI, we also need to add the dice position to find our absolute center position (aka relative to
 				 * the entire image).
 				 */
-				Point center = new Point(diceRect.x + pipRect.x + pipRect.width / 2, diceRect.y + pipRect.y + pipRect.height / 2);
-				Imgproc.ellipse(image, center, new Size(pipRect.width / 2, pipRect.height / 2), 0, 0, 360, new Scalar(255, 0, 255), 1, 0, 0);
+				center.x = diceRect.x + pipRect.x + pipRect.width / 2;
+				center.y = diceRect.y + pipRect.y + pipRect.height / 2;
+				axes.width = pipRect.width / 2;
+				axes.height = pipRect.height / 2;
+				Imgproc.ellipse(image, center, axes, 0, 0, 360, PIP_COLOR, 1, 0, 0);
 				
 				numPips++;
 			}
 			
+			int slot = (slots != null) ? slots[i] : i;
+			
 			// Disgusting or Elegant? Discuss.
-			// If there's more than 6 pips, then ignore the data and add the last valid value, or zero, if there isn't an previous valid value.
-			numPips = ((numPips <= 6) ? numPips : ((data.get(i) != null) ? data.get(i) : 0));
+			// If there's more pips than a die has sides, then ignore the data and add the last valid value, or zero, if there isn't an previous valid value.
+			if (numPips > dice.getSides())
+				MISREADS.inc();
+			numPips = ((numPips <= dice.getSides()) ? numPips : ((data.get(slot) != null) ? data.get(slot) : 0));
 			
 			/*
-			 * Basically, if there's 5 or less dice, we store the data. if we somehow find more than 5 dice, any detections we do will be worthless anyways, because there's no way to tell the actually
-			 * dice from the garbage. Thus, if that happens, we just ignore the data.
+			 * Basically, if there's as many dice as we roll or less, we store the data. if we somehow find more dice than that, any detections we do will be worthless anyways, because there's no way to
+			 * tell the actually dice from the garbage. Thus, if that happens, we just ignore the data.
 			 */
-			if (diceDetections.toArray().length < 6)
-				data.put(i, numPips);
-				
-			curDetect += "d: " + i + " n: " + numPips + "\t"; // formats our console output
+			if (diceRects.length <= dice.getNumDice()) {
+				data.put(slot, numPips);
+				consensus.submit(slot, numPips);
+			}
 			
 		}
 		
-		// System.out.println(curDetect); // Output to console of the data for debugging purposes.
+		consensus.endFrame();
+		
+		if (image != frame) {
+			image.release();
+			image = frame;
+			startingPoint.x = captureRegion.x;
+			startingPoint.y = captureRegion.y;
+			endingPoint.x = captureRegion.x + captureRegion.width;
+			endingPoint.y = captureRegion.y + captureRegion.height;
+			Imgproc.rectangle(image, startingPoint, endingPoint, REGION_COLOR);
+		}
 		
 		return image;
 	}
 	
+	/**
+	 * Reads the dice in a frame, without drawing anything, tracking them, or storing the result. Used to measure how well the classifier does on recorded sessions.
+	 * 
+	 * @param frame
+	 * @return the number of pips on each die found, ordered from left to right.
+	 */
+	public synchronized int[] readDice(Mat frame) {
+		if (frame.empty())
+			return new int[0];
+			
+		Mat view = regionOf(frame);
+		Rect[] diceRects = detectDice(preprocessor.process(view));
+		if (view != frame)
+			view.release();
+		for (int i = 0; i < diceRects.length; i++)
+			diceRects[i] = preprocessor.toFull(diceRects[i]);
+		Arrays.sort(diceRects, new Comparator<Rect>() {
+			@Override
+			public int compare(Rect a, Rect b) {
+				return Integer.compare(a.x, b.x);
+			}
+		});
+		
+		Rect[][] allPips = detectPips(preprocessor.getGray(), diceRects);
+		int[] pips = new int[diceRects.length];
+		for (int i = 0; i < pips.length; i++)
+			pips[i] = allPips[i].length;
+		return pips;
+	}
+	
+	/**
+	 * @param frame
+	 * @return the part of the frame inside the capture region, or the frame itself if there is no region. A region is clipped to the frame.
+	 */
+	private Mat regionOf(Mat frame) {
+		if (captureRegion == null)
+			return frame;
+			
+		int x = Math.max(0, captureRegion.x);
+		int y = Math.max(0, captureRegion.y);
+		int width = Math.min(captureRegion.x + captureRegion.width, frame.cols()) - x;
+		int height = Math.min(captureRegion.y + captureRegion.height, frame.rows()) - y;
+		if (width <= 0 || height <= 0)
+			return frame; // Region is off the frame altogether, e.g. a different camera
+			
+		return frame.submat(y, y + height, x, x + width);
+	}
+	
+	/**
+	 * Restricts dice detection to part of the frame, e.g. the tray the dice are rolled in. Detection then costs as much as the region is big, however big the frame is.
+	 * 
+	 * @param region
+	 *            area to search for dice, in frame coordinates, or null to search the whole frame
+	 */
+	public synchronized void setCaptureRegion(Rect region) {
+		captureRegion = (region != null) ? region.clone() : null;
+		if (tracker != null)
+			tracker.reset(); // Tracks are relative to the region
+		consensus.reset();
+	}
+	
+	/**
+	 * @return the area searched for dice, or null if it's the whole frame.
+	 */
+	public synchronized Rect getCaptureRegion() {
+		return (captureRegion != null) ? captureRegion.clone() : null;
+	}
+	
+	/**
+	 * Sets the capture region to where the dice are. Reads a few frames, searching the whole of each, and takes the area covering every die found, plus a die's width of margin on each side.
+	 * <p>
+	 * The dice should be spread across the tray while this runs.
+	 * <p>
+	 * 
+	 * @param frames
+	 *            number of frames to read
+	 * @return the new capture region, or null if no dice were found, in which case the region is left as it was.
+	 */
+	public synchronized Rect calibrateCaptureRegion(int frames) {
+		int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE, right = Integer.MIN_VALUE, bottom = Integer.MIN_VALUE;
+		int cols = 0, rows = 0;
+		
+		for (int i = 0; i < frames; i++) {
+			if (!grabFrame(frame))
+				continue;
+				
+			cols = frame.cols();
+			rows = frame.rows();
+			for (Rect r : detectDice(preprocessor.process(frame))) {
+				r = preprocessor.toFull(r);
+				left = Math.min(left, r.x);
+				top = Math.min(top, r.y);
+				right = Math.max(right, r.x + r.width);
+				bottom = Math.max(bottom, r.y + r.height);
+			}
+		}
+		
+		if (left == Integer.MAX_VALUE)
+			return null;
+			
+		int margin = (int) config.getDiceMaxSize().width;
+		left = Math.max(0, left - margin);
+		top = Math.max(0, top - margin);
+		right = Math.min(cols, right + margin);
+		bottom = Math.min(rows, bottom + margin);
+		setCaptureRegion(new Rect(left, top, right - left, bottom - top));
+		return getCaptureRegion();
+	}
+	
+	/**
+	 * Detects dice in the whole frame.
+	 * 
+	 * @param image
+	 * @return dice ROIs
+	 */
+	private Rect[] detectDice(Mat image) {
+		// Note that detectMultiScale has thrown an unknown exception before (literally, unknown). This is to prevent crashing.
+		long start = Metrics.now();
+		try {
+			diceCascade.detectMultiScale(image, diceDetections, config.getDiceScaleFactor(), config.getDiceMinNeighbors(), 0, diceMinSize, diceMaxSize);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return NO_PIPS;
+		} finally {
+			DICE_TIME.recordSince(start);
+		}
+		
+		// Copy the detections out of native memory once, rather than on every access.
+		return diceDetections.toArray();
+	}
+	
+	/**
+	 * Detects dice in part of the frame.
+	 * 
+	 * @param image
+	 * @param region
+	 *            area to search
+	 * @return dice ROIs, relative to {@code region}
+	 */
+	private Rect[] detectDice(Mat image, Rect region) {
+		Mat sub = image.submat(region);
+		try {
+			return detectDice(sub);
+		} finally {
+			sub.release();
+		}
+	}
+	
+	/**
+	 * Finds the dice using the tracker, and fills {@code trackedSlots} with the slot of each.
+	 * 
+	 * @param image
+	 * @return dice ROIs
+	 */
+	private Rect[] trackDice(Mat image) {
+		trackedSlots = null;
+		
+		if (tracker.needsFullDetection()) {
+			Rect[] found = detectDice(image);
+			if (found.length > dice.getNumDice()) {
+				// Too many dice to tell the real ones from the garbage, so leave the tracks alone. Nothing gets stored for this frame either.
+				tracker.endFrame();
+				return found;
+			}
+			tracker.update(found);
+		} else {
+			// Only look around where the dice were last seen.
+			for (int slot = 0; slot < tracker.getSlots(); slot++) {
+				Rect region = tracker.getSearchRegion(slot, image.cols(), image.rows());
+				if (region != null)
+					tracker.update(slot, region, detectDice(image, region));
+			}
+		}
+		tracker.endFrame();
+		
+		Rect[] diceRects = new Rect[tracker.getCount()];
+		trackedSlots = new int[diceRects.length];
+		for (int slot = 0, i = 0; slot < tracker.getSlots(); slot++) {
+			if (tracker.getTrack(slot) != null) {
+				diceRects[i] = tracker.getTrack(slot);
+				trackedSlots[i++] = slot;
+			} else {
+				data.remove(slot); // That die is gone, so its old reading is no good either.
+				consensus.clear(slot);
+			}
+		}
+		
+		return diceRects;
+	}
+	
+	/**
+	 * Turns dice tracking on or off. When on, each die keeps the same data slot from frame to frame, and most frames only search the area around the known dice rather than the whole image.
+	 * 
+	 * @param fullInterval
+	 *            search the whole frame at least once every this many frames, or 0 to turn tracking off
+	 */
+	public synchronized void setTracking(int fullInterval) {
+		tracker = (fullInterval > 0) ? new DiceTracker(dice.getNumDice(), fullInterval) : null;
+		data.clear(); // Slots mean something different now
+		consensus.reset();
+	}
+	
+	/**
+	 * Sets up how frames are prepared for dice detection. They are always converted to grayscale first.
+	 * 
+	 * @param scale
+	 *            size of the image the dice are searched in, relative to the frame. Less than 1 saves time, but the dice must still be bigger than the dice classifier's smallest size once shrunk.
+	 * @param equalize
+	 *            whether to equalize the histogram before searching for dice
+	 */
+	public synchronized void setPreprocessing(double scale, boolean equalize) {
+		preprocessor.release();
+		preprocessor = new FramePreprocessor(scale, equalize);
+		diceMinSize = preprocessor.toWorking(config.getDiceMinSize());
+		diceMaxSize = preprocessor.toWorking(config.getDiceMaxSize());
+		if (tracker != null)
+			tracker.reset(); // Old tracks are in the old working image's coordinates
+	}
+	
+	/**
+	 * Sets how many frames the dice have to agree on before a roll is stable. Anyone already waiting on the old settings keeps waiting forever, so call this before reading any rolls.
+	 * 
+	 * @param window
+	 *            number of frames each die votes over
+	 * @param threshold
+	 *            fraction of those frames that must agree
+	 */
+	public synchronized void setConsensus(int window, double threshold) {
+		consensus = new RollConsensus(dice.getNumDice(), dice.getSides(), window, threshold);
+	}
+	
+	/**
+	 * @return the votes on the dice seen so far, which can be waited on for a stable roll.
+	 */
+	public RollConsensus getConsensus() {
+		return consensus;
+	}
+	
+	/**
+	 * Detects the pips of every die, either one die after another or all at once, depending on {@code setPipThreads}.
+	 * 
+	 * @param image
+	 *            the frame, which must not be drawn on until this returns
+	 * @param diceRects
+	 *            dice ROIs
+	 * @return the pips of each die, relative to the die's ROI, in the same order as {@code diceRects}
+	 */
+	private Rect[][] detectPips(Mat image, Rect[] diceRects) {
+		Rect[][] allPips = new Rect[diceRects.length][];
+		
+		if (pipExecutor == null || diceRects.length < 2) {
+			for (int i = 0; i < diceRects.length; i++)
+				allPips[i] = detectPips(pipCascade, pipDetections, image, diceRects[i]);
+			return allPips;
+		}
+		
+		List<Future<Rect[]>> futures = new ArrayList<>(diceRects.length);
+		for (final Rect diceRect : diceRects) {
+			futures.add(pipExecutor.submit(new Callable<Rect[]>() {
+				@Override
+				public Rect[] call() {
+					PipWorker worker = pipWorkers.get();
+					if (worker == null) { // First job on this thread
+						worker = new PipWorker(config.getPipCascade());
+						pipWorkers.set(worker);
+					}
+					return detectPips(worker.cascade, worker.detections, image, diceRect);
+				}
+			}));
+		}
+		
+		// Collected in submission order, so each die keeps its place no matter which finishes first.
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				allPips[i] = futures.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				allPips[i] = NO_PIPS;
+			} catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+				allPips[i] = NO_PIPS;
+			}
+		}
+		
+		return allPips;
+	}
+	
+	/**
+	 * Detects the pips of a single die.
+	 */
+	private Rect[] detectPips(CascadeClassifier cascade, MatOfRect detections, Mat image, Rect diceRect) {
+		Mat roi = image.submat(diceRect);
+		long start = Metrics.now();
+		try {
+			cascade.detectMultiScale(roi, detections, config.getPipScaleFactor(), config.getPipMinNeighbors(), 0, config.getPipMinSize(), config.getPipMaxSize());
+			return detections.toArray();
+		} catch (Exception e) {
+			// Note that detectMultiScale has thrown an unknown exception before (literally, unknown). This is to prevent crashing.
+			e.printStackTrace();
+			return NO_PIPS;
+		} finally {
+			roi.release(); // Only a header pointing into image, but it still has to be freed.
+			PIP_TIME.recordSince(start);
+		}
+	}
+	
+	/**
+	 * Sets the number of threads used to detect pips. With more than one, the pips of each die are detected at the same time, each thread using its own copy of the pip classifier (as they
+	 * aren't thread-safe).
+	 * 
+	 * @param threads
+	 *            number of threads, or 1 to detect the dice one after another on the calling thread
+	 */
+	public synchronized void setPipThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Need at least one thread");
+			
+		if (pipExecutor != null) {
+			pipExecutor.shutdown();
+			pipExecutor = null;
+		}
+		
+		if (threads > 1) {
+			pipExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "pip-detection");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+	}
+	
+	/**
+	 * A pip classifier, and somewhere for its results to go, for one detection thread.
+	 */
+	private static class PipWorker {
+		private final CascadeClassifier	cascade;
+		private final MatOfRect			detections	= new MatOfRect();
+		
+		PipWorker(String cascadeFile) {
+			cascade = new CascadeClassifier(cascadeFile);
+		}
+	}
+	
 	/**
 	 * Gets the current dice data.
 	 * 
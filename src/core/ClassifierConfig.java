@@ -0,0 +1,213 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+
+/**
+ * Which cascades the classifier uses, and the parameters it runs them with. Saved as a properties file, normally {@code res/classifier.properties}, which {@code CascadeTuner} in the benchmarks
+ * writes after trying every combination on a recorded session.
+ * <p>
+ * Any key missing from the file keeps its default, which are the values the classifier has always used.
+ */
+public final class ClassifierConfig {
+	public static final String				FILE	= "res/classifier.properties";
+	public static final ClassifierConfig	DEFAULT	= new ClassifierConfig(new Properties());
+	
+	private final String					diceCascade;
+	private final double					diceScaleFactor;
+	private final int						diceMinNeighbors;
+	private final Size						diceMinSize;
+	private final Size						diceMaxSize;
+	private final String					pipCascade;
+	private final double					pipScaleFactor;
+	private final int						pipMinNeighbors;
+	private final Size						pipMinSize;
+	private final Size						pipMaxSize;
+	private final Rect						captureRegion;
+	
+	/**
+	 * @param p
+	 *            settings, in the format written by {@code toProperties}
+	 * @throws NumberFormatException
+	 *             if a number can't be parsed
+	 */
+	public ClassifierConfig(Properties p) {
+		diceCascade = p.getProperty("dice.cascade", "res/newMethod/diceCascade.xml");
+		diceScaleFactor = Double.parseDouble(p.getProperty("dice.scaleFactor", "1.1"));
+		diceMinNeighbors = Integer.parseInt(p.getProperty("dice.minNeighbors", "4"));
+		diceMinSize = square(p.getProperty("dice.minSize", "20"));
+		diceMaxSize = square(p.getProperty("dice.maxSize", "38"));
+		pipCascade = p.getProperty("pip.cascade", "res/newMethod/pipCascade6.xml");
+		pipScaleFactor = Double.parseDouble(p.getProperty("pip.scaleFactor", "1.01"));
+		pipMinNeighbors = Integer.parseInt(p.getProperty("pip.minNeighbors", "4"));
+		pipMinSize = square(p.getProperty("pip.minSize", "2"));
+		pipMaxSize = square(p.getProperty("pip.maxSize", "10"));
+		captureRegion = rect(p.getProperty("capture.region"));
+	}
+	
+	/**
+	 * Loads {@code res/classifier.properties}, if there is one.
+	 * 
+	 * @return the saved settings, or the defaults if there are none or they can't be read
+	 */
+	public static ClassifierConfig load() {
+		if (!new File(FILE).exists())
+			return DEFAULT;
+		
+		try {
+			return load(FILE);
+		} catch (IOException | NumberFormatException e) {
+			e.printStackTrace();
+			return DEFAULT;
+		}
+	}
+	
+	/**
+	 * @param file
+	 *            location of the properties file
+	 * @return the saved settings
+	 * @throws IOException
+	 */
+	public static ClassifierConfig load(String file) throws IOException {
+		Properties p = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			p.load(in);
+		}
+		return new ClassifierConfig(p);
+	}
+	
+	/**
+	 * @param file
+	 *            location of the properties file
+	 * @param comment
+	 *            written at the top of the file
+	 * @throws IOException
+	 */
+	public void save(String file, String comment) throws IOException {
+		try (OutputStream out = new FileOutputStream(file)) {
+			toProperties().store(out, comment);
+		}
+	}
+	
+	/**
+	 * @return every setting, including the defaults.
+	 */
+	public Properties toProperties() {
+		Properties p = new Properties();
+		p.setProperty("dice.cascade", diceCascade);
+		p.setProperty("dice.scaleFactor", String.valueOf(diceScaleFactor));
+		p.setProperty("dice.minNeighbors", String.valueOf(diceMinNeighbors));
+		p.setProperty("dice.minSize", String.valueOf((int) diceMinSize.width));
+		p.setProperty("dice.maxSize", String.valueOf((int) diceMaxSize.width));
+		p.setProperty("pip.cascade", pipCascade);
+		p.setProperty("pip.scaleFactor", String.valueOf(pipScaleFactor));
+		p.setProperty("pip.minNeighbors", String.valueOf(pipMinNeighbors));
+		p.setProperty("pip.minSize", String.valueOf((int) pipMinSize.width));
+		p.setProperty("pip.maxSize", String.valueOf((int) pipMaxSize.width));
+		if (captureRegion != null)
+			p.setProperty("capture.region", captureRegion.x + "," + captureRegion.y + "," + captureRegion.width + "," + captureRegion.height);
+		return p;
+	}
+	
+	private static Size square(String px) {
+		int side = Integer.parseInt(px.trim());
+		return new Size(side, side);
+	}
+	
+	/**
+	 * @param xywh
+	 *            "x,y,width,height", or null
+	 */
+	private static Rect rect(String xywh) {
+		if (xywh == null || xywh.trim().isEmpty())
+			return null;
+			
+		String[] parts = xywh.split(",");
+		if (parts.length != 4)
+			throw new NumberFormatException("Expected x,y,width,height but got " + xywh);
+		return new Rect(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()), Integer.parseInt(parts[2].trim()), Integer.parseInt(parts[3].trim()));
+	}
+	
+	public String getDiceCascade() {
+		return diceCascade;
+	}
+	
+	public double getDiceScaleFactor() {
+		return diceScaleFactor;
+	}
+	
+	public int getDiceMinNeighbors() {
+		return diceMinNeighbors;
+	}
+	
+	/**
+	 * @return smallest die searched for, in pixels of the full resolution frame.
+	 */
+	public Size getDiceMinSize() {
+		return diceMinSize;
+	}
+	
+	/**
+	 * @return biggest die searched for, in pixels of the full resolution frame.
+	 */
+	public Size getDiceMaxSize() {
+		return diceMaxSize;
+	}
+	
+	public String getPipCascade() {
+		return pipCascade;
+	}
+	
+	public double getPipScaleFactor() {
+		return pipScaleFactor;
+	}
+	
+	public int getPipMinNeighbors() {
+		return pipMinNeighbors;
+	}
+	
+	public Size getPipMinSize() {
+		return pipMinSize;
+	}
+	
+	public Size getPipMaxSize() {
+		return pipMaxSize;
+	}
+	
+	/**
+	 * @return the part of the frame dice are searched for in, or null for the whole frame.
+	 */
+	public Rect getCaptureRegion() {
+		return (captureRegion != null) ? captureRegion.clone() : null;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("dice %s %.2f/%d, pips %s %.2f/%d", new File(diceCascade).getName(), diceScaleFactor, diceMinNeighbors, new File(pipCascade).getName(), pipScaleFactor, pipMinNeighbors);
+	}
+}
@@ -0,0 +1,249 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A word list in a binary format that can be used straight from a memory-mapped file, without reading or indexing it first. Opening one takes the same time however many words it has.
+ * <p>
+ * The format, all big-endian:
+ * <ul>
+ * <li>Header: the magic number "DWD2", the word count, the length of the words in bytes, the CRC32 of everything after the header (as a long), and the size (as a long) and SHA-256 of the text
+ * it was compiled from.</li>
+ * <li>Offset table: count + 1 ints. Word i runs from offset i to offset i + 1, relative to the start of the words.</li>
+ * <li>Words: the UTF-8 bytes of every word, one after another, with nothing in between.</li>
+ * </ul>
+ * The size and hash of the text say which version of it this was compiled from, without depending on file times, which copies and coarse file systems don't keep.
+ */
+public class CompiledDictionary implements WordList {
+	private static final int	MAGIC		= 0x44574432;	// "DWD2"
+	private static final int	HASH_SIZE	= 32;			// SHA-256
+	private static final int	HEADER_SIZE	= 4 + 4 + 4 + 8 + 8 + HASH_SIZE;
+	public static final String	EXTENSION	= ".dwd";
+	
+	private final MappedByteBuffer	data;
+	private final int				size;
+	private final int				wordsStart;
+	private final long				checksum;
+	private final long				sourceSize;
+	private final String			sourceHash;
+	
+	private CompiledDictionary(MappedByteBuffer data, int size, long checksum, long sourceSize, String sourceHash) {
+		this.data = data;
+		this.size = size;
+		this.wordsStart = HEADER_SIZE + (size + 1) * 4;
+		this.checksum = checksum;
+		this.sourceSize = sourceSize;
+		this.sourceHash = sourceHash;
+	}
+	
+	/**
+	 * Maps a compiled dictionary. Only the header is checked; see {@code verify} for a full check.
+	 * 
+	 * @param file
+	 *            location of the compiled dictionary
+	 * @return the dictionary
+	 * @throws IOException
+	 *             if the file can't be read, or its header doesn't match its contents
+	 */
+	public static CompiledDictionary open(String file) throws IOException {
+		MappedByteBuffer data;
+		try (FileChannel fc = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+			if (fc.size() >= Integer.MAX_VALUE)
+				throw new IOException(file + " is too large to be mapped");
+			data = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size()); // The mapping stays valid after the channel is closed.
+		}
+		
+		if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC)
+			throw new IOException(file + " is not a compiled dictionary");
+		
+		int size = data.getInt(4);
+		int wordBytes = data.getInt(8);
+		long checksum = data.getLong(12);
+		long sourceSize = data.getLong(20);
+		byte[] sourceHash = new byte[HASH_SIZE];
+		ByteBuffer header = data.duplicate();
+		header.position(28);
+		header.get(sourceHash);
+		if (size < 0 || wordBytes < 0 || (long) HEADER_SIZE + (size + 1L) * 4 + wordBytes != data.limit() || data.getInt(HEADER_SIZE + size * 4) != wordBytes)
+			throw new IOException(file + " is truncated or corrupt");
+		
+		return new CompiledDictionary(data, size, checksum, sourceSize, DictionaryManifest.toHex(sourceHash));
+	}
+	
+	/**
+	 * Compiles a word list.
+	 * 
+	 * @param words
+	 * @param sourceSize
+	 *            size in bytes of the text the words were read from
+	 * @param sourceHash
+	 *            SHA-256 of that text, in lowercase hex
+	 * @param file
+	 *            where to write the compiled dictionary
+	 * @throws IOException
+	 */
+	public static void compile(WordList words, long sourceSize, String sourceHash, String file) throws IOException {
+		byte[] hash = DictionaryManifest.fromHex(sourceHash);
+		if (hash.length != HASH_SIZE)
+			throw new IllegalArgumentException(sourceHash + " is not a SHA-256 hash");
+			
+		byte[][] encoded = new byte[words.size()][];
+		int wordBytes = 0;
+		for (int i = 0; i < encoded.length; i++) {
+			encoded[i] = words.getWord(i).getBytes(StandardCharsets.UTF_8);
+			wordBytes += encoded[i].length;
+		}
+		
+		ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + (encoded.length + 1) * 4 + wordBytes);
+		buf.position(HEADER_SIZE);
+		int offset = 0;
+		for (byte[] word : encoded) {
+			buf.putInt(offset);
+			offset += word.length;
+		}
+		buf.putInt(offset);
+		for (byte[] word : encoded)
+			buf.put(word);
+		
+		CRC32 crc = new CRC32();
+		crc.update(buf.array(), HEADER_SIZE, buf.capacity() - HEADER_SIZE);
+		buf.putInt(0, MAGIC).putInt(4, encoded.length).putInt(8, wordBytes).putLong(12, crc.getValue()).putLong(20, sourceSize);
+		buf.position(28);
+		buf.put(hash);
+		
+		buf.clear();
+		try (FileChannel fc = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buf.hasRemaining())
+				fc.write(buf);
+		}
+	}
+	
+	/**
+	 * Compiles a plain text word list, with one word per line.
+	 * 
+	 * @param textFile
+	 * @param file
+	 *            where to write the compiled dictionary
+	 * @throws IOException
+	 */
+	public static void compile(String textFile, String file) throws IOException {
+		compile(textFile, DictionaryManifest.hash(textFile), file);
+	}
+	
+	/**
+	 * Compiles a plain text word list whose hash is already known, e.g. from its {@code DictionaryManifest}.
+	 * 
+	 * @param textFile
+	 * @param textHash
+	 *            SHA-256 of the text file, in lowercase hex
+	 * @param file
+	 *            where to write the compiled dictionary
+	 * @throws IOException
+	 */
+	public static void compile(String textFile, String textHash, String file) throws IOException {
+		compile(MappedDictionaryStore.open(textFile), Files.size(Paths.get(textFile)), textHash, file);
+	}
+	
+	/**
+	 * @param textFile
+	 *            location of a plain text word list
+	 * @return where its compiled version goes: the same name with a .dwd extension rather than .txt
+	 */
+	public static String getCompiledName(String textFile) {
+		return (textFile.endsWith(".txt") ? textFile.substring(0, textFile.length() - 4) : textFile) + EXTENSION;
+	}
+	
+	/**
+	 * Reads the whole dictionary, and checks it against the checksum in its header.
+	 * 
+	 * @return true if the dictionary is intact
+	 */
+	public boolean verify() {
+		ByteBuffer body = data.duplicate();
+		body.position(HEADER_SIZE);
+		
+		CRC32 crc = new CRC32();
+		crc.update(body);
+		return crc.getValue() == checksum;
+	}
+	
+	@Override
+	public String getWord(int index) {
+		int start = data.getInt(HEADER_SIZE + index * 4);
+		int end = data.getInt(HEADER_SIZE + (index + 1) * 4);
+		
+		// A duplicate has its own position, so that several threads can look up words at once.
+		ByteBuffer word = data.duplicate();
+		word.position(wordsStart + start);
+		byte[] bytes = new byte[end - start];
+		word.get(bytes);
+		
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return size in bytes of the text this was compiled from.
+	 */
+	public long getSourceSize() {
+		return sourceSize;
+	}
+	
+	/**
+	 * @return SHA-256 of the text this was compiled from, in lowercase hex.
+	 */
+	public String getSourceHash() {
+		return sourceHash;
+	}
+	
+	/**
+	 * Compiles plain text word lists. Usage: {@code CompiledDictionary <words.txt>...}, which writes each list next to itself with a .dwd extension.
+	 * 
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.err.println("Usage: CompiledDictionary <words.txt>...");
+			System.exit(1);
+		}
+		
+		for (String textFile : args) {
+			try {
+				compile(textFile, getCompiledName(textFile));
+				System.out.println("Compiled " + textFile + " to " + getCompiledName(textFile));
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+/**
+ * The dice used for each roll: how many there are, and how many sides each has. Every roll picks one of {@code sides^numDice} words, so this also sets the size of the word list.
+ */
+public final class DiceConfig {
+	/** Classic diceware: five six-sided dice, for a list of 7776 words. */
+	public static final DiceConfig	DEFAULT	= new DiceConfig(5, 6);
+	
+	private final int				numDice;
+	private final int				sides;
+	private final int				cardinality;
+	
+	/**
+	 * @param numDice
+	 *            number of dice rolled per word
+	 * @param sides
+	 *            number of sides on each die
+	 */
+	public DiceConfig(int numDice, int sides) {
+		int cardinality = RollDecoder.getCardinality(numDice, sides);
+		if (cardinality == RollDecoder.INVALID)
+			throw new IllegalArgumentException("Unsupported dice: " + numDice + "d" + sides);
+		
+		this.numDice = numDice;
+		this.sides = sides;
+		this.cardinality = cardinality;
+	}
+	
+	/**
+	 * Parses dice written the usual way, e.g. "5d6" or "4d20".
+	 * 
+	 * @param dice
+	 * @return the parsed configuration
+	 */
+	public static DiceConfig parse(String dice) {
+		int d = dice.toLowerCase().indexOf('d');
+		if (d <= 0)
+			throw new IllegalArgumentException("Dice should be written like 5d6, not " + dice);
+		
+		return new DiceConfig(Integer.parseInt(dice.substring(0, d)), Integer.parseInt(dice.substring(d + 1)));
+	}
+	
+	public int getNumDice() {
+		return numDice;
+	}
+	
+	public int getSides() {
+		return sides;
+	}
+	
+	/**
+	 * @return the number of distinct rolls, which is also the number of words in the word list.
+	 */
+	public int getCardinality() {
+		return cardinality;
+	}
+	
+	/**
+	 * @return bits of entropy in a single roll of all the dice.
+	 */
+	public double getBitsPerRoll() {
+		return Math.log(cardinality) / Math.log(2);
+	}
+	
+	@Override
+	public String toString() {
+		return numDice + "d" + sides;
+	}
+}
@@ -0,0 +1,243 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import org.opencv.core.Rect;
+
+/**
+ * Follows dice from one frame to the next.
+ * <p>
+ * Each die that is seen gets a slot, and keeps it for as long as it stays in view, so its reading doesn't jump around when the classifier reports the dice in a different order. Once the dice are
+ * known, they only need to be looked for in a small region around where they last were; the whole frame is only searched every few frames, or when a die goes missing.
+ * <p>
+ * Dice are matched between frames by the distance between their centres.
+ * <p>
+ */
+public class DiceTracker {
+	private static final int	MAX_MISSES		= 2;	// Full detections a die may be missing from before its slot is freed
+	private static final double	MATCH_RADIUS	= 1.5;	// How far a die may move between full detections, in die widths
+	
+	private final Rect[]		tracks;
+	private final int[]			misses;
+	private final int			fullInterval;
+	private int					framesSinceFull;
+	private boolean				lost			= true;	// Nothing to track yet
+	
+	/**
+	 * @param maxDice
+	 *            number of slots
+	 * @param fullInterval
+	 *            search the whole frame at least this often, in frames
+	 */
+	public DiceTracker(int maxDice, int fullInterval) {
+		if (maxDice < 1 || fullInterval < 1)
+			throw new IllegalArgumentException("Need at least one die and a positive interval");
+		
+		this.tracks = new Rect[maxDice];
+		this.misses = new int[maxDice];
+		this.fullInterval = fullInterval;
+	}
+	
+	/**
+	 * Checks whether this frame needs the whole image searched, rather than just the regions around the known dice.
+	 * 
+	 * @return true if a full detection is due
+	 */
+	public boolean needsFullDetection() {
+		return lost || framesSinceFull >= fullInterval;
+	}
+	
+	/**
+	 * Updates the tracks with the results of a full detection. Each detection is matched with the nearest known die, and any detection that matches nothing takes the first free slot.
+	 * 
+	 * @param detections
+	 *            every die found in the frame
+	 */
+	public void update(Rect[] detections) {
+		framesSinceFull = 0;
+		lost = false;
+		
+		boolean[] matched = new boolean[tracks.length];
+		boolean[] used = new boolean[detections.length];
+		
+		// Greedy matching: keep pairing up the closest die and detection until nothing is close enough.
+		while (true) {
+			int bestSlot = -1;
+			int bestDet = -1;
+			double bestDist = Double.MAX_VALUE;
+			for (int slot = 0; slot < tracks.length; slot++) {
+				if (tracks[slot] == null || matched[slot])
+					continue;
+				double radius = MATCH_RADIUS * Math.max(tracks[slot].width, tracks[slot].height);
+				for (int d = 0; d < detections.length; d++) {
+					if (used[d])
+						continue;
+					double dist = distance(tracks[slot], detections[d]);
+					if (dist <= radius && dist < bestDist) {
+						bestDist = dist;
+						bestSlot = slot;
+						bestDet = d;
+					}
+				}
+			}
+			
+			if (bestSlot < 0)
+				break;
+			
+			tracks[bestSlot] = detections[bestDet];
+			misses[bestSlot] = 0;
+			matched[bestSlot] = true;
+			used[bestDet] = true;
+		}
+		
+		// Dice that weren't seen
+		for (int slot = 0; slot < tracks.length; slot++) {
+			if (tracks[slot] != null && !matched[slot] && ++misses[slot] > MAX_MISSES) {
+				tracks[slot] = null;
+				lost = true; // Look again next frame, in case it's back
+			}
+		}
+		
+		// New dice
+		for (int d = 0; d < detections.length; d++) {
+			if (used[d])
+				continue;
+			for (int slot = 0; slot < tracks.length; slot++) {
+				if (tracks[slot] == null) {
+					tracks[slot] = detections[d];
+					misses[slot] = 0;
+					break;
+				}
+			}
+		}
+		
+		if (getCount() == 0)
+			lost = true;
+	}
+	
+	/**
+	 * Updates a single die with the result of searching around it. If it wasn't found, the next frame gets a full detection.
+	 * 
+	 * @param slot
+	 * @param found
+	 *            where the die is now, in frame coordinates, or null if it wasn't found
+	 */
+	public void update(int slot, Rect found) {
+		if (found != null)
+			tracks[slot] = found;
+		else
+			lost = true;
+	}
+	
+	/**
+	 * Updates a single die with the dice found when searching around it. The one closest to where the die last was is taken to be it.
+	 * 
+	 * @param slot
+	 * @param region
+	 *            the region that was searched, from {@code getSearchRegion}
+	 * @param candidates
+	 *            dice found in the region, relative to the region
+	 */
+	public void update(int slot, Rect region, Rect[] candidates) {
+		Rect best = null;
+		double bestDist = Double.MAX_VALUE;
+		for (Rect c : candidates) {
+			Rect r = new Rect(region.x + c.x, region.y + c.y, c.width, c.height);
+			double dist = distance(tracks[slot], r);
+			if (dist < bestDist) {
+				bestDist = dist;
+				best = r;
+			}
+		}
+		
+		update(slot, best);
+	}
+	
+	/**
+	 * Marks the end of a frame.
+	 */
+	public void endFrame() {
+		framesSinceFull++;
+	}
+	
+	/**
+	 * Returns the region to search for a die in, which is its last known position grown by its own size on each side.
+	 * 
+	 * @param slot
+	 * @param frameWidth
+	 * @param frameHeight
+	 * @return the search region, clipped to the frame, or null if the slot is empty.
+	 */
+	public Rect getSearchRegion(int slot, int frameWidth, int frameHeight) {
+		Rect r = tracks[slot];
+		if (r == null)
+			return null;
+		
+		int x = Math.max(0, r.x - r.width);
+		int y = Math.max(0, r.y - r.height);
+		int right = Math.min(frameWidth, r.x + 2 * r.width);
+		int bottom = Math.min(frameHeight, r.y + 2 * r.height);
+		if (right <= x || bottom <= y)
+			return null;
+		
+		return new Rect(x, y, right - x, bottom - y);
+	}
+	
+	/**
+	 * @param slot
+	 * @return where the die in a slot was last seen, or null if the slot is empty.
+	 */
+	public Rect getTrack(int slot) {
+		return tracks[slot];
+	}
+	
+	/**
+	 * @return the number of slots.
+	 */
+	public int getSlots() {
+		return tracks.length;
+	}
+	
+	/**
+	 * @return the number of dice being tracked.
+	 */
+	public int getCount() {
+		int count = 0;
+		for (Rect r : tracks)
+			if (r != null)
+				count++;
+		return count;
+	}
+	
+	/**
+	 * Forgets every die.
+	 */
+	public void reset() {
+		for (int slot = 0; slot < tracks.length; slot++) {
+			tracks[slot] = null;
+			misses[slot] = 0;
+		}
+		lost = true;
+	}
+	
+	private static double distance(Rect a, Rect b) {
+		double dx = (a.x + a.width / 2.0) - (b.x + b.width / 2.0);
+		double dy = (a.y + a.height / 2.0) - (b.y + b.height / 2.0);
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+}
@@ -0,0 +1,208 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * Describes a generated word list: its SHA-256 hash, its size, and what it was generated with. Kept next to the dictionaries, so the dictionary ID can be shown without reading the word list
+ * again.
+ */
+public final class DictionaryManifest {
+	private static final int	MAP_CHUNK_SIZE	= 64 * 1024 * 1024;
+	private static final char[]	HEX				= "0123456789abcdef".toCharArray();
+	
+	private final String		hash;
+	private final long			size;
+	private final int			cardinality;
+	private final Properties	parameters;
+	
+	/**
+	 * @param hash
+	 *            SHA-256 of the word list, in lowercase hex
+	 * @param size
+	 *            size of the word list in bytes
+	 * @param cardinality
+	 *            number of words in the word list
+	 * @param parameters
+	 *            whatever else is worth knowing about how the dictionaries were generated
+	 */
+	public DictionaryManifest(String hash, long size, int cardinality, Properties parameters) {
+		this.hash = hash;
+		this.size = size;
+		this.cardinality = cardinality;
+		this.parameters = new Properties();
+		this.parameters.putAll(parameters);
+	}
+	
+	/**
+	 * @param file
+	 *            location of the manifest
+	 * @return the manifest
+	 * @throws IOException
+	 *             if the file can't be read, or isn't a manifest
+	 */
+	public static DictionaryManifest load(String file) throws IOException {
+		Properties p = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			p.load(in);
+		}
+		
+		String hash = (String) p.remove("sha256");
+		String size = (String) p.remove("size");
+		String cardinality = (String) p.remove("cardinality");
+		if (hash == null || size == null || cardinality == null)
+			throw new IOException(file + " is not a dictionary manifest");
+		
+		try {
+			return new DictionaryManifest(hash, Long.parseLong(size), Integer.parseInt(cardinality), p);
+		} catch (NumberFormatException e) {
+			throw new IOException(file + " is not a dictionary manifest", e);
+		}
+	}
+	
+	/**
+	 * @param file
+	 *            location of the manifest
+	 * @throws IOException
+	 */
+	public void save(String file) throws IOException {
+		Properties p = new Properties();
+		p.putAll(parameters);
+		p.setProperty("sha256", hash);
+		p.setProperty("size", String.valueOf(size));
+		p.setProperty("cardinality", String.valueOf(cardinality));
+		try (OutputStream out = new FileOutputStream(file)) {
+			p.store(out, "Generated with the dictionaries. Delete it along with them.");
+		}
+	}
+	
+	/**
+	 * Hashes a file by mapping it a chunk at a time, rather than reading it onto the heap.
+	 * 
+	 * @param file
+	 * @return SHA-256 of the file, in lowercase hex
+	 * @throws IOException
+	 */
+	public static String hash(String file) throws IOException {
+		MessageDigest digest = newDigest();
+		try (FileChannel fc = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+			long length = fc.size();
+			for (long pos = 0; pos < length; pos += MAP_CHUNK_SIZE) {
+				MappedByteBuffer chunk = fc.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_CHUNK_SIZE, length - pos));
+				digest.update(chunk);
+			}
+		}
+		
+		return toHex(digest.digest());
+	}
+	
+	/**
+	 * Re-reads the word list and checks that it still matches this manifest.
+	 * 
+	 * @param file
+	 *            location of the word list
+	 * @return true if the word list is the one this manifest was made for
+	 * @throws IOException
+	 */
+	public boolean verify(String file) throws IOException {
+		return size == Files.size(Paths.get(file)) && hash.equals(hash(file));
+	}
+	
+	/**
+	 * @return a SHA-256 digest, which every Java platform has.
+	 */
+	static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	static byte[] fromHex(String hex) {
+		if (hex.length() % 2 != 0)
+			throw new IllegalArgumentException(hex + " is not hex");
+			
+		byte[] bytes = new byte[hex.length() / 2];
+		for (int i = 0; i < bytes.length; i++) {
+			int high = Character.digit(hex.charAt(i * 2), 16);
+			int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+			if (high < 0 || low < 0)
+				throw new IllegalArgumentException(hex + " is not hex");
+			bytes[i] = (byte) (high << 4 | low);
+		}
+		return bytes;
+	}
+	
+	static String toHex(byte[] bytes) {
+		char[] hex = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			hex[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			hex[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(hex);
+	}
+	
+	/**
+	 * @return SHA-256 of the word list, in lowercase hex.
+	 */
+	public String getHash() {
+		return hash;
+	}
+	
+	/**
+	 * @return size of the word list in bytes.
+	 */
+	public long getSize() {
+		return size;
+	}
+	
+	public int getCardinality() {
+		return cardinality;
+	}
+	
+	/**
+	 * @param key
+	 * @return a generation parameter, or null if it wasn't recorded.
+	 */
+	public String getParameter(String key) {
+		return parameters.getProperty(key);
+	}
+	
+	/**
+	 * @return a copy of every generation parameter.
+	 */
+	public Properties getParameters() {
+		Properties copy = new Properties();
+		copy.putAll(parameters);
+		return copy;
+	}
+}
@@ -0,0 +1,79 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * An in-memory word list. The whole file is kept as a single UTF-8 byte buffer, with a table of line offsets into it, so that looking up a word is a constant time operation.
+ */
+public class DictionaryStore implements WordList {
+	private final byte[]		data;
+	private final ByteBuffer	view;	// Of data, for LineIndex
+	private final int[]			offsets;
+	private final int			size;
+	
+	private DictionaryStore(byte[] data, int[] offsets, int size) {
+		this.data = data;
+		this.view = ByteBuffer.wrap(data);
+		this.offsets = offsets;
+		this.size = size;
+	}
+	
+	/**
+	 * Reads a dictionary into memory.
+	 * <p>
+	 * Lines are split as described in {@code LineIndex}.
+	 * <p>
+	 * 
+	 * @param file
+	 *            location of dictionary
+	 * @return the loaded dictionary
+	 * @throws IOException
+	 *             if the file could not be read
+	 */
+	public static DictionaryStore load(String file) throws IOException {
+		byte[] data = Files.readAllBytes(Paths.get(file));
+		ByteBuffer view = ByteBuffer.wrap(data);
+		
+		// Count the lines first, so the offset table can be allocated exactly once.
+		int size = LineIndex.count(view);
+		int[] offsets = new int[size + 1];
+		LineIndex.index(view, size, IntBuffer.wrap(offsets));
+		
+		return new DictionaryStore(data, offsets, size);
+	}
+	
+	@Override
+	public String getWord(int index) {
+		int start = offsets[index];
+		int end = LineIndex.wordEnd(view, start, offsets[index + 1]);
+		
+		return new String(data, start, end - start, StandardCharsets.UTF_8);
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+}
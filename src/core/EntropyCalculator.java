@@ -0,0 +1,153 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+/**
+ * Works out exactly how many bits of entropy a passphrase has, from how it was generated rather than from what it looks like.
+ * <p>
+ * Every word is picked by a roll, so a normal word is worth log2 of the cardinality. A special character or number word is picked by the roll plus a random offset into the larger dictionary
+ * (see {@code PasswordGenerator.getWord}), so it's worth the entropy of that sum, but never more than the random characters it is made of. Finally, the special character and number words are put
+ * in random places, which adds log2 of the number of ways to arrange the word types.
+ * <p>
+ * Everything that doesn't depend on the phrase is worked out once, up front, so a phrase costs a handful of additions. Assumes an attacker knows the dictionaries.
+ */
+public final class EntropyCalculator {
+	private final double	wordBits;
+	private final double	specialBits;
+	private final double	numberBits;
+	private volatile double[]	log2Factorials	= new double[] { 0 };
+	
+	/**
+	 * @param cardinality
+	 *            number of possible rolls
+	 * @param specialDictSize
+	 *            number of words in the special character and number dictionaries
+	 * @param specialWordLength
+	 *            number of characters in a special character or number word
+	 * @param specialAlphabet
+	 *            number of different special characters
+	 * @param numberAlphabet
+	 *            number of different digits
+	 */
+	public EntropyCalculator(int cardinality, int specialDictSize, int specialWordLength, int specialAlphabet, int numberAlphabet) {
+		this(cardinality, specialDictSize, specialDictSize, specialWordLength, specialAlphabet, numberAlphabet);
+	}
+	
+	/**
+	 * @param cardinality
+	 *            number of possible rolls
+	 * @param specialDictSize
+	 *            number of words in the special character dictionary
+	 * @param numberDictSize
+	 *            number of words in the number dictionary
+	 * @param specialWordLength
+	 *            number of characters in a special character or number word
+	 * @param specialAlphabet
+	 *            number of different special characters
+	 * @param numberAlphabet
+	 *            number of different digits
+	 */
+	public EntropyCalculator(int cardinality, int specialDictSize, int numberDictSize, int specialWordLength, int specialAlphabet, int numberAlphabet) {
+		this.wordBits = log2(cardinality);
+		this.specialBits = Math.min(offsetWordBits(cardinality, specialDictSize), specialWordLength * log2(specialAlphabet));
+		this.numberBits = Math.min(offsetWordBits(cardinality, numberDictSize), specialWordLength * log2(numberAlphabet));
+	}
+	
+	/**
+	 * @param minSize
+	 *            minimum phrase length
+	 * @param numSp
+	 *            number of special character "words"
+	 * @param numNum
+	 *            number of number "words"
+	 * @return bits of entropy of a passphrase generated with these settings.
+	 */
+	public double getPhraseBits(int minSize, int numSp, int numNum) {
+		int size = PassphraseService.getPhraseSize(minSize, numSp, numNum);
+		int numWords = size - numSp - numNum;
+		
+		// Which positions hold which type of word: size! / (numSp! numNum! numWords!) ways
+		double arrangements = log2Factorial(size) - log2Factorial(numSp) - log2Factorial(numNum) - log2Factorial(numWords);
+		
+		return numWords * wordBits + numSp * specialBits + numNum * numberBits + arrangements;
+	}
+	
+	/**
+	 * @return bits of entropy of a normal word.
+	 */
+	public double getWordBits() {
+		return wordBits;
+	}
+	
+	/**
+	 * @return bits of entropy of a special character word.
+	 */
+	public double getSpecialBits() {
+		return specialBits;
+	}
+	
+	/**
+	 * @return bits of entropy of a number word.
+	 */
+	public double getNumberBits() {
+		return numberBits;
+	}
+	
+	/**
+	 * Entropy of the index of a word picked as roll + offset, where the roll is uniform over the cardinality and the offset is uniform over the rest of the dictionary. The index then has a
+	 * trapezoidal distribution: the number of ways to make each index climbs from 1 up to the smaller of the two ranges, stays there, and falls back down.
+	 * 
+	 * @param cardinality
+	 * @param dictSize
+	 * @return bits of entropy of the index
+	 */
+	private static double offsetWordBits(int cardinality, int dictSize) {
+		int offsets = Math.max(1, dictSize - cardinality); // As in getWord: nextInt(size - cardinality), or none at all
+		int low = Math.min(cardinality, offsets);
+		int high = Math.max(cardinality, offsets);
+		
+		// H = log2(total) - sum(ways * log2(ways)) / total
+		double sum = (high - low + 1) * (double) low * log2(low);
+		for (int ways = 1; ways < low; ways++)
+			sum += 2 * ways * log2(ways);
+		
+		double total = (double) cardinality * offsets;
+		return log2(total) - sum / total;
+	}
+	
+	/**
+	 * @param n
+	 * @return log2(n!), from a table that grows as needed.
+	 */
+	private double log2Factorial(int n) {
+		double[] table = log2Factorials;
+		if (n >= table.length) {
+			double[] grown = new double[Math.max(n + 1, table.length * 2)];
+			System.arraycopy(table, 0, grown, 0, table.length);
+			for (int i = table.length; i < grown.length; i++)
+				grown[i] = grown[i - 1] + log2(i);
+			log2Factorials = table = grown; // Replaced rather than changed, so other threads see either the old table or the new one
+		}
+		
+		return table[n];
+	}
+	
+	private static double log2(double x) {
+		return Math.log(x) / Math.log(2);
+	}
+}
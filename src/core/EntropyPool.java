@@ -0,0 +1,128 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * Buffers the output of a {@code SecureRandom}.
+ * <p>
+ * Each call to a {@code SecureRandom} has a fixed cost on top of the bytes it produces, which adds up when we need millions of small numbers. This pulls a whole block of random bytes at a time,
+ * and hands it out piece by piece. Every value still comes straight from the secure generator; only the number of calls into it changes.
+ * <p>
+ * Like the generator it wraps, this can be used anywhere a {@code Random} is expected. Unlike {@code SecureRandom}, it is not thread-safe, so each thread should have its own pool.
+ * <p>
+ */
+public class EntropyPool extends Random {
+	private static final long	serialVersionUID	= 2940117260458813672L;
+	private static final int	DEFAULT_BLOCK_SIZE	= 4096;
+	
+	private final SecureRandom	source;
+	private final byte[]		block;
+	private int					pos;
+	
+	/**
+	 * @param source
+	 *            the generator every random byte is taken from
+	 */
+	public EntropyPool(SecureRandom source) {
+		this(source, DEFAULT_BLOCK_SIZE);
+	}
+	
+	/**
+	 * @param source
+	 *            the generator every random byte is taken from
+	 * @param blockSize
+	 *            number of bytes requested from {@code source} at once. Must be a multiple of 4.
+	 */
+	public EntropyPool(SecureRandom source, int blockSize) {
+		if (blockSize <= 0 || blockSize % 4 != 0)
+			throw new IllegalArgumentException("Block size must be a positive multiple of 4");
+		
+		this.source = source;
+		this.block = new byte[blockSize];
+		this.pos = blockSize; // Start empty, so the first draw fills the block.
+	}
+	
+	/**
+	 * Returns the next 32 random bits from the block, refilling it from the source when it runs out.
+	 */
+	private int nextWord() {
+		if (pos == block.length) {
+			source.nextBytes(block);
+			pos = 0;
+		}
+		
+		int word = (block[pos] & 0xFF) << 24 | (block[pos + 1] & 0xFF) << 16 | (block[pos + 2] & 0xFF) << 8 | (block[pos + 3] & 0xFF);
+		pos += 4;
+		return word;
+	}
+	
+	@Override
+	protected int next(int bits) {
+		return nextWord() >>> (32 - bits);
+	}
+	
+	/**
+	 * Returns a uniformly distributed number between 0 (inclusive) and {@code bound} (exclusive).
+	 * <p>
+	 * Simply taking a random number modulo {@code bound} would favour the lower values whenever {@code bound} isn't a power of two, so any draw from the incomplete range at the top is thrown
+	 * away and drawn again. At worst this throws away just under half of all draws, and usually far fewer (about 0.00006% for a bound of 7776).
+	 * <p>
+	 * 
+	 * @param bound
+	 *            upper bound, must be positive
+	 * @return a random number in {@code [0, bound)}
+	 */
+	@Override
+	public int nextInt(int bound) {
+		if (bound <= 0)
+			throw new IllegalArgumentException("bound must be positive");
+		
+		long range = 1L << 32;
+		long limit = range - range % bound; // Largest multiple of bound that fits in 32 bits
+		long r;
+		do {
+			r = nextWord() & 0xFFFFFFFFL;
+		} while (r >= limit);
+		
+		return (int) (r % bound);
+	}
+	
+	@Override
+	public void nextBytes(byte[] bytes) {
+		for (int i = 0; i < bytes.length; i++) {
+			if (pos == block.length) {
+				source.nextBytes(block);
+				pos = 0;
+			}
+			bytes[i] = block[pos++];
+		}
+		pos = (pos + 3) & ~3; // Keep nextWord() aligned
+	}
+	
+	/**
+	 * Returns the generator backing this pool, e.g. to reseed it. Bytes that are already buffered are not affected.
+	 * 
+	 * @return the underlying generator
+	 */
+	public SecureRandom getSource() {
+		return source;
+	}
+}
@@ -0,0 +1,55 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+/**
+ * Holds back a recording so that it plays at the speed it was recorded at.
+ */
+class FramePacer {
+	private final long	interval;	// Nanoseconds between frames, or 0 to not wait at all
+	private long		next		= 0;
+	
+	/**
+	 * @param fps
+	 *            frames per second, or 0 or less to never wait
+	 */
+	FramePacer(double fps) {
+		interval = (fps > 0) ? (long) (1e9 / fps) : 0;
+	}
+	
+	/**
+	 * Waits until it's time for the next frame.
+	 */
+	void await() {
+		if (interval == 0)
+			return;
+		
+		long now = System.nanoTime();
+		if (next == 0 || now - next > interval)
+			next = now; // First frame, or we've fallen too far behind to catch up
+		else if (next > now) {
+			try {
+				Thread.sleep((next - now) / 1000000, (int) ((next - now) % 1000000));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		next += interval;
+	}
+}
@@ -0,0 +1,128 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Prepares a frame for the cascades. The cascades only look at grayscale anyway, so the frame is converted once here rather than once per detection, and can be shrunk to a smaller working
+ * resolution and have its histogram equalized.
+ * <p>
+ * Dice are detected in the working image, then their ROIs are mapped back to the full resolution frame for the pip pass and the overlay. Not thread-safe; the buffers are reused on every frame.
+ */
+public class FramePreprocessor {
+	private final double	scale;
+	private final boolean	equalize;
+	private Mat				gray	= new Mat();
+	private Mat				working	= new Mat();
+	private Size			size	= new Size();
+	
+	/**
+	 * @param scale
+	 *            size of the working image relative to the frame, from 0 (exclusive) to 1. Keep in mind that the dice shrink too, and the dice classifier can't find anything smaller than it was
+	 *            trained on.
+	 * @param equalize
+	 *            whether to equalize the histogram of the working image, which helps in poor or uneven lighting
+	 */
+	public FramePreprocessor(double scale, boolean equalize) {
+		if (scale <= 0 || scale > 1)
+			throw new IllegalArgumentException("Scale must be between 0 and 1");
+		
+		this.scale = scale;
+		this.equalize = equalize;
+	}
+	
+	/**
+	 * Converts a frame to grayscale, then makes the working image from it.
+	 * 
+	 * @param frame
+	 *            a BGR frame, which is left untouched
+	 * @return the working image, which is only valid until the next call
+	 */
+	public Mat process(Mat frame) {
+		Imgproc.cvtColor(frame, gray, Imgproc.COLOR_BGR2GRAY);
+		
+		if (scale == 1 && !equalize)
+			return gray;
+		
+		if (scale < 1) {
+			size.width = Math.max(1, Math.round(gray.cols() * scale));
+			size.height = Math.max(1, Math.round(gray.rows() * scale));
+			Imgproc.resize(gray, working, size, 0, 0, Imgproc.INTER_AREA);
+			if (equalize)
+				Imgproc.equalizeHist(working, working);
+		} else {
+			Imgproc.equalizeHist(gray, working); // Into a separate buffer, so the full resolution image stays as it was
+		}
+		
+		return working;
+	}
+	
+	/**
+	 * @return the full resolution grayscale image of the last frame.
+	 */
+	public Mat getGray() {
+		return gray;
+	}
+	
+	/**
+	 * Maps a ROI in the working image back to the full resolution frame.
+	 * 
+	 * @param r
+	 *            ROI in the working image
+	 * @return a new ROI, kept within the bounds of the frame
+	 */
+	public Rect toFull(Rect r) {
+		if (scale == 1)
+			return r;
+		
+		int x = (int) Math.round(r.x / scale);
+		int y = (int) Math.round(r.y / scale);
+		int width = Math.min((int) Math.round(r.width / scale), gray.cols() - x);
+		int height = Math.min((int) Math.round(r.height / scale), gray.rows() - y);
+		return new Rect(x, y, width, height);
+	}
+	
+	/**
+	 * Scales a size given at full resolution down to the working image.
+	 * 
+	 * @param s
+	 * @return a new size
+	 */
+	public Size toWorking(Size s) {
+		return new Size(Math.max(1, Math.round(s.width * scale)), Math.max(1, Math.round(s.height * scale)));
+	}
+	
+	/**
+	 * @return size of the working image relative to the frame.
+	 */
+	public double getScale() {
+		return scale;
+	}
+	
+	/**
+	 * Frees the buffers.
+	 */
+	public void release() {
+		gray.release();
+		working.release();
+	}
+}
@@ -0,0 +1,45 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import org.opencv.core.Mat;
+
+/**
+ * Where the classifier gets its frames from: a live camera, or a recorded session played back.
+ */
+public interface FrameSource {
+	
+	/**
+	 * Reads the next frame.
+	 * 
+	 * @param frame
+	 *            matrix the frame is read into, reusing its buffer where possible
+	 * @return false if there is no frame, e.g. because the camera isn't connected or the recording has ended
+	 */
+	boolean read(Mat frame);
+	
+	/**
+	 * @return true if frames can be read.
+	 */
+	boolean isOpened();
+	
+	/**
+	 * Releases the source. It can't be read from afterwards.
+	 */
+	void close();
+}
@@ -0,0 +1,89 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * Frames from a directory of images, such as the ones {@code Classifier.captureRawImg} saves into {@code rawImg/}. The images are played back in order of their file names, which for
+ * {@code captureRawImg} is the order they were captured in.
+ */
+public class ImageDirectorySource implements FrameSource {
+	private File[]		images;
+	private int			next	= 0;
+	private FramePacer	pacer;
+	
+	/**
+	 * @param dir
+	 *            directory to read PNG images from
+	 * @param fps
+	 *            frames per second to play back at, or 0 to read frames as fast as they are asked for
+	 */
+	public ImageDirectorySource(String dir, double fps) {
+		images = new File(dir).listFiles((d, name) -> name.toLowerCase().endsWith(".png"));
+		if (images == null) {
+			System.err.println(dir + " is not a directory.");
+			images = new File[0];
+		}
+		Arrays.sort(images);
+		pacer = new FramePacer(fps);
+	}
+	
+	@Override
+	public boolean read(Mat frame) {
+		while (next < images.length) {
+			pacer.await();
+			Mat image = Imgcodecs.imread(images[next++].getPath());
+			if (image.empty()) {
+				System.err.println("Could not read " + images[next - 1] + ", skipping it.");
+				continue;
+			}
+			
+			image.copyTo(frame);
+			image.release();
+			return true;
+		}
+		
+		frame.release(); // Same as a finished VideoCapture
+		return false;
+	}
+	
+	/**
+	 * @return false once every image has been read, or the source has been closed, so a finished replay doesn't look like a live source.
+	 */
+	@Override
+	public boolean isOpened() {
+		return next < images.length;
+	}
+	
+	/**
+	 * @return number of images in the directory.
+	 */
+	public int size() {
+		return images.length;
+	}
+	
+	@Override
+	public void close() {
+		next = images.length;
+	}
+}
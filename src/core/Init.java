@@ -18,26 +18,63 @@
 package core;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 
 import org.opencv.core.Core;
 
 public class Init {
+	private static final String USAGE = "Usage: Init [options]\n"
+			+ "      --dice <dice>          dice rolled per word, e.g. 6d6 or 4d20 (default 5d6)\n"
+			+ "      --source <file>        word list to generate dictionaries from. Larger dice need larger word lists, such as res/originalDict.txt\n"
+			+ "      --metrics-port <port>  time the capture loop, and serve the timings on http://localhost:<port>/metrics";
+			
 	// Dictionary from http://simson.net/ref/2005/csci_e-170/web2.txt (GNU dictionary)
 	public static void main(String[] args) {
-		System.loadLibrary(Core.NATIVE_LIBRARY_NAME); // required by OpenCV
+		DiceConfig dice = DiceConfig.DEFAULT;
+		String source = null;
+		int metricsPort = -1;
 		
-		// Delete any files that were left over from the previous run, to ensure that new data is created.
 		try {
-			Files.deleteIfExists(Paths.get("res/output.txt"));
-			Files.deleteIfExists(Paths.get("res/spCharDict.txt"));
-			Files.deleteIfExists(Paths.get("res/numDict.txt"));
-		} catch (IOException e) {
-			e.printStackTrace();
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+					case "--dice":
+						dice = DiceConfig.parse(args[++i]);
+						break;
+					case "--source":
+						source = args[++i];
+						break;
+					case "--metrics-port":
+						metricsPort = Integer.parseInt(args[++i]);
+						if (metricsPort < 0 || metricsPort > 0xFFFF)
+							throw new IllegalArgumentException("Not a port: " + metricsPort);
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) { // NumberFormatException is an IllegalArgumentException
+			System.err.println((e instanceof ArrayIndexOutOfBoundsException) ? "Missing value for " + args[args.length - 1] : e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME); // required by OpenCV
+		
+		if (metricsPort >= 0) {
+			Metrics.setEnabled(true);
+			try {
+				Metrics.serve(metricsPort);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
 		
 		// Start the program
-		new Main();
+		try {
+			new Main(dice, source);
+		} catch (IllegalArgumentException e) { // The source dictionary is too small for the dice
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+		}
 	}
 }
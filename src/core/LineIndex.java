@@ -0,0 +1,88 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Splits a dictionary's bytes into lines, for the word lists that index a whole file rather than reading it a line at a time.
+ * <p>
+ * A line ends at a '\n', and a '\r' just before it is dropped, so files with Unix or Windows line endings give the same words. Unlike {@code Files.lines}, a lone '\r' does not end a line; it stays
+ * part of the word. The last line doesn't need a terminator.
+ */
+final class LineIndex {
+	
+	private LineIndex() {
+	}
+	
+	/**
+	 * @param data
+	 *            the whole file
+	 * @return the number of lines in it.
+	 */
+	static int count(ByteBuffer data) {
+		int length = data.limit();
+		int size = 0;
+		for (int i = 0; i < length; i++)
+			if (data.get(i) == '\n')
+				size++;
+		if (length > 0 && data.get(length - 1) != '\n')
+			size++; // Last line has no trailing newline
+			
+		return size;
+	}
+	
+	/**
+	 * Fills in the start of every line. offsets[i] is the start of line i, and offsets[size] is one past the end of the last line's terminator (as if there were one), so line i always ends one
+	 * byte before offsets[i + 1].
+	 * 
+	 * @param data
+	 *            the whole file
+	 * @param size
+	 *            the number of lines, from {@code count}
+	 * @param offsets
+	 *            room for size + 1 offsets
+	 */
+	static void index(ByteBuffer data, int size, IntBuffer offsets) {
+		int length = data.limit();
+		int line = 1;
+		for (int i = 0; i < length && line < size; i++)
+			if (data.get(i) == '\n')
+				offsets.put(line++, i + 1);
+		offsets.put(0, 0);
+		offsets.put(size, (length > 0 && data.get(length - 1) != '\n') ? length + 1 : length);
+	}
+	
+	/**
+	 * @param data
+	 *            the whole file
+	 * @param start
+	 *            offset of the line
+	 * @param next
+	 *            offset of the line after it
+	 * @return where the word on the line ends, without its line terminator.
+	 */
+	static int wordEnd(ByteBuffer data, int start, int next) {
+		int end = next - 1; // Drop the newline
+		if (end > start && data.get(end - 1) == '\r')
+			end--;
+			
+		return end;
+	}
+}
@@ -24,8 +24,8 @@ import java.awt.event.ActionListener;
 import java.security.SecureRandom;
 import java.text.NumberFormat;
 import java.util.ArrayList;
-import java.util.Map;
-import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import javax.swing.BoxLayout;
 import javax.swing.ImageIcon;
@@ -34,9 +34,13 @@ import javax.swing.JCheckBox;
 import javax.swing.JFormattedTextField;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.CaretEvent;
 import javax.swing.event.CaretListener;
 
+import org.opencv.core.Rect;
+
 public class Main {
 	
 	/*
@@ -55,6 +59,8 @@ public class Main {
 	private JLabel				passwordStr				= new JLabel("0 bits");
 	private JLabel				dictionaryText			= new JLabel("Current Dictionary Hash: ");
 	private JLabel				dictionaryHash			= new JLabel(" ");
+	private JLabel				rollEntropyText			= new JLabel("Bits of entropy per roll: ");
+	private JLabel				rollEntropy				= new JLabel("0");
 	private JCheckBox			useSpecialChars			= new JCheckBox("Use Special Characters?");
 	private JFormattedTextField	minSpChars				= new JFormattedTextField(NumberFormat.INTEGER_FIELD);
 	private JCheckBox			useNumbers				= new JCheckBox("Use Numbers?                   ");
@@ -70,21 +76,49 @@ public class Main {
 	private JButton				connectVC				= new JButton("Connect to webcam");
 	private JButton				captureRawImg			= new JButton("Capture Raw Image");
 	private JButton				captureDetImg			= new JButton("Capture Detected Image");
+	private JButton				calibrateRegion			= new JButton("Calibrate dice tray");
+	private JLabel				metricsOverlay			= new JLabel(" ");
 	private JLabel				copyright				= new JLabel("\u00a9 2016 Edward Shen. OpenCV's libraries and code were used under the BSD 3-Clause License.");
 														
-	private PasswordGenerator	pg						= new PasswordGenerator();
+	private DiceConfig			dice;
+	private PasswordGenerator	pg;
 	private VideoPanel			livefeed				= new VideoPanel();
-	private Classifier			cl						= new Classifier();
-	private Thread				livestreamThread;
+	private Classifier			cl;
+	private CapturePipeline		pipeline;
+	private EntropyPool			rnd						= new EntropyPool(new SecureRandom());
+	private CompletableFuture<int[]>	pendingRoll;	// The roll the capture button is waiting on, if any
+	private Timer				rollTimeout;
 								
 	private ArrayList<String>	passphrase;
+	private SlotAssigner		slots					= new SlotAssigner(rnd);
 	private int					curNumSp				= 0;
 	private int					curNumNum				= 0;
 														
+	private static final Metrics.Histogram	ROLL_AGREEMENT	= Metrics.histogram("main.rollAgreement");	// Percentage of frames that agreed on each captured roll
+	
 	/**
-	 * Opens the video stream and generates the UI.
+	 * Opens the video stream and generates the UI, for the classic five six-sided dice.
 	 */
 	public Main() {
+		this(DiceConfig.DEFAULT, null);
+	}
+	
+	/**
+	 * Opens the video stream and generates the UI.
+	 * 
+	 * @param dice
+	 *            the dice that are rolled for each word
+	 * @param sourceDict
+	 *            word list that dictionaries are generated from, or null for the default one
+	 */
+	public Main(DiceConfig dice, String sourceDict) {
+		this.dice = dice;
+		pg = new PasswordGenerator(dice);
+		if (sourceDict != null)
+			pg.setSourceDict(sourceDict);
+		cl = new Classifier(dice);
+		cl.setTracking(10); // Dice keep their slot, and the whole frame is only searched every 10th frame
+		cl.setPipThreads(Math.min(dice.getNumDice(), Runtime.getRuntime().availableProcessors())); // Read every die at once, if there are cores for it
 		
 		cl.openVC(0);
 		
@@ -116,6 +150,7 @@ public class Main {
 		minSize.setColumns(10);
 		minSize.addPropertyChangeListener("value", null);
 		
+		rollEntropy.setText(String.format("%.2f (%s)", dice.getBitsPerRoll(), dice));
 		passwordData.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 14));
 		dictionaryHash.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 14));
 		
@@ -135,28 +170,42 @@ public class Main {
 		jf.pack();
 		jf.setVisible(true);
 		
-		// Starts a new thread to safely update the Livestream
-		livestreamThread = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				while (true) {
-					livefeed.paintComponent(cl.getNextImage());
+		// Capture, detection and painting each run on their own thread, so a slow classifier doesn't freeze the UI.
+		pipeline = new CapturePipeline(cl, livefeed);
+		pipeline.start();
+		
+		if (Metrics.isEnabled()) {
+			metricsOverlay.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+			new Timer(1000, new ActionListener() {
+				
+				@Override
+				public void actionPerformed(ActionEvent arg0) {
+					updateMetricsOverlay();
 				}
 				
-			}
-		});
-		
-		livestreamThread.setDaemon(true); // So that it should (read: not working right now; TODO: Debug) exit properly
-		livestreamThread.start();
+			}).start();
+		}
 		
 	}
 	
+	/**
+	 * Shows how long the last stretch of frames took at each stage, under the livestream.
+	 */
+	private void updateMetricsOverlay() {
+		metricsOverlay.setText(String.format("capture %.1f ms   dice %.1f ms   pips %.1f ms/die   dice/frame %.1f   misreads %d   dropped %d",
+				Metrics.timer("classifier.capture").getPercentile(50) / 1e6, Metrics.timer("classifier.diceCascade").getPercentile(50) / 1e6,
+				Metrics.timer("classifier.pipCascade").getPercentile(50) / 1e6, Metrics.histogram("classifier.dicePerFrame").getMean(), Metrics.counter("classifier.misreads").get(),
+				pipeline.getDroppedFrames()));
+	}
+	
 	/**
 	 * Attaches components to the main JPanel
 	 */
 	private void addComponents() {
 		// Whitespace sorted by group.
 		jp.add(livefeed);
+		if (Metrics.isEnabled())
+			jp.add(metricsOverlay);
 		
 		jp.add(passwordText);
 		jp.add(passwordData);
@@ -166,6 +215,8 @@ public class Main {
 		jp.add(dictionaryText);
 		jp.add(dictionaryHash);
 		
+		jp.makeAndAddGroup(rollEntropyText, rollEntropy);
+		
 		jp.makeAndAddGroup(useSpecialChars, minSpChars);
 		
 		jp.makeAndAddGroup(useNumbers, minNum);
@@ -177,6 +228,7 @@ public class Main {
 		jp.makeAndAddGroup(capturePassphraseWord, generateDictionary);
 		
 		jp.makeAndAddGroup(connectVC, captureRawImg, captureDetImg);
+		jp.makeAndAddGroup(calibrateRegion);
 		
 		jp.add(copyright);
 		
@@ -220,33 +272,61 @@ public class Main {
 			
 			@Override
 			public void actionPerformed(ActionEvent arg0) {
-				int curVal = Integer.valueOf(String.valueOf(wordsLeft.getText())) - 1;
-				disableSettings();
-				wordsLeft.setText(String.valueOf(curVal));
-				setPassphraseWord();
-				// Our reset function. It honestly should be placed within a separate function, but there hasn't been another use for it, so it's been placed here.
-				if (curVal == 0) {
-					enableSettings();
-					setPassphrase();
-					updatePhraseSize();
-					curNumNum = 0;
-					curNumSp = 0;
-					passphrase = null;
-				}
+				capturePassphraseWord.setEnabled(false);
+				capturePassphraseWord.setText("Waiting for the dice to settle...");
 				
+				// A single frame can be misread, so wait until the dice have read the same for a few frames in a row.
+				final CompletableFuture<int[]> stable = cl.getConsensus().awaitStableRollAsync();
+				pendingRoll = stable;
+				rollTimeout.restart();
+				stable.thenAccept(new Consumer<int[]>() {
+					
+					@Override
+					public void accept(final int[] roll) {
+						// Completed on the detection thread
+						SwingUtilities.invokeLater(new Runnable() {
+							
+							@Override
+							public void run() {
+								if (pendingRoll == stable) // Otherwise it has timed out in the meantime
+									captureRoll(roll);
+							}
+							
+						});
+					}
+					
+				});
 			}
 			
 		});
 		
+		rollTimeout = new Timer(5000, new ActionListener() {
+			
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				if (pendingRoll == null)
+					return;
+					
+				pendingRoll.cancel(false);
+				pendingRoll = null;
+				resetCaptureButton();
+				System.err.println("The dice never settled. Make sure they are all in view and try again.");
+			}
+			
+		});
+		rollTimeout.setRepeats(false);
+		
 		generateDictionary.addActionListener(new ActionListener() {
 			
 			@Override
 			public void actionPerformed(ActionEvent arg0) {
 				generateDictionary.setEnabled(false);
-				pg.generateDict(true, true); // Generate dictionaries regardless of selection.
-				dictionaryHash.setText(pg.getDictHash());
+				// Generate dictionaries regardless of selection.
+				if (pg.generateDict(true, true)) {
+					dictionaryHash.setText(pg.getDictHash());
+					capturePassphraseWord.setEnabled(true);
+				}
 				generateDictionary.setEnabled(true);
-				capturePassphraseWord.setEnabled(true);
 			}
 			
 		});
@@ -279,6 +359,38 @@ public class Main {
 			}
 		});
 		
+		calibrateRegion.addActionListener(new ActionListener() {
+			
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				calibrateRegion.setEnabled(false);
+				
+				// Reads a second's worth of frames, so keep it off the event thread.
+				new Thread(new Runnable() {
+					
+					@Override
+					public void run() {
+						Rect r = cl.calibrateCaptureRegion(30);
+						if (r == null)
+							System.err.println("No dice found, so the capture region was left as it was.");
+						else
+							System.out.println(String.format("Only searching %dx%d at (%d, %d) for dice. Add capture.region=%d,%d,%d,%d to %s to keep it.", r.width, r.height, r.x, r.y, r.x, r.y,
+									r.width, r.height, ClassifierConfig.FILE));
+									
+						SwingUtilities.invokeLater(new Runnable() {
+							
+							@Override
+							public void run() {
+								calibrateRegion.setEnabled(true);
+							}
+							
+						});
+					}
+					
+				}, "calibration").start();
+			}
+		});
+		
 	}
 	
 	/**
@@ -333,18 +445,7 @@ public class Main {
 		 * 
 		 * User wants at least 2 words, with 3 being special "words" and 2 being number "words". The below function returns 5, as 2 < 2 + 3.
 		 */
-		String val;
-		if (useNumbers.isSelected() && useSpecialChars.isSelected()) {
-			val = String.valueOf((minSizeVal > (minNumVal + minSpVal)) ? minSizeVal : minNumVal + minSpVal);
-			
-		} else if (useNumbers.isSelected() && !useSpecialChars.isSelected()) {
-			val = String.valueOf((minSizeVal > (minNumVal + minSpVal)) ? minSizeVal : minNumVal);
-			
-		} else if (!useNumbers.isSelected() && useSpecialChars.isSelected()) {
-			val = String.valueOf((minSizeVal > (minNumVal + minSpVal)) ? minSizeVal : minSpVal);
-		} else {
-			val = String.valueOf(minSizeVal);
-		}
+		String val = String.valueOf(PassphraseService.getPhraseSize(minSizeVal, useSpecialChars.isSelected() ? minSpVal : 0, useNumbers.isSelected() ? minNumVal : 0));
 		
 		curPhraseSize.setText(val);
 		wordsLeft.setText(val);
@@ -354,60 +455,95 @@ public class Main {
 	 * Parses the ArrayList {@code passphrase} and updates the responding JLabel to display the password.
 	 */
 	private void setPassphrase() {
-		String password = "";
+		StringBuilder sb = new StringBuilder();
 		
 		for (int i = 0; i < passphrase.size(); i++) {
-			password += passphrase.get(i) + "    "; // Since JComponents do not support \t, 4 spaces were used instead.
+			if (i > 0)
+				sb.append("    "); // Since JComponents do not support \t, 4 spaces were used instead.
+			sb.append(passphrase.get(i));
 		}
 		
-		password = password.trim();
+		String password = sb.toString();
 		
 		passwordData.setText(password);
-		passwordStr.setText(pg.getPassStrength(password));
+		try {
+			passwordStr.setText(String.format("%.1f bits", pg.getEntropyCalculator().getPhraseBits(passphrase.size(), curNumSp, curNumNum)));
+		} catch (IllegalStateException e) {
+			System.err.println(e.getMessage());
+			passwordStr.setText("Unknown");
+		}
 		
 	}
 	
+	/**
+	 * Counts a stable roll towards the passphrase.
+	 * 
+	 * @param roll
+	 *            pips on each die
+	 */
+	private void captureRoll(int[] roll) {
+		rollTimeout.stop();
+		pendingRoll = null;
+		resetCaptureButton();
+		
+		if (!setPassphraseWord(roll))
+			return; // Couldn't read the dice, so this roll doesn't count.
+			
+		disableSettings(); // The phrase has started, so its settings can't change until it's finished.
+		int curVal = Integer.valueOf(String.valueOf(wordsLeft.getText())) - 1;
+		wordsLeft.setText(String.valueOf(curVal));
+		// Our reset function. It honestly should be placed within a separate function, but there hasn't been another use for it, so it's been placed here.
+		if (curVal == 0) {
+			enableSettings();
+			setPassphrase();
+			updatePhraseSize();
+			curNumNum = 0;
+			curNumSp = 0;
+			passphrase = null;
+		}
+	}
+	
+	/**
+	 * Lets the capture button be pressed again, once a roll has been captured or given up on.
+	 */
+	private void resetCaptureButton() {
+		capturePassphraseWord.setText("Capture Passphrase word");
+		capturePassphraseWord.setEnabled(true);
+	}
+	
 	/**
 	 * Stores the detected and converted dice data.
 	 * <p>
 	 * Initializes the ArrayList {@code passphrase} to store our passwords, captures the current image data, parses it to a line number, and sends its off to {@code PasswordGenerator} class to be
 	 * converted into a String. Then stores the data.
+	 * 
+	 * @param roll
+	 *            pips on each die, as agreed on over several frames
+	 * @return false if the dice could not be read, in which case nothing was stored.
 	 */
-	private void setPassphraseWord() {
-		
-		// You know, this probably should have been done with a primitive array. Oops.
-		// TODO: convert to primitive array?
-		
-		SecureRandom rnd = new SecureRandom();
+	private boolean setPassphraseWord(int[] roll) {
 		String word;
 		
 		// If this is our first word in our phrase, generate a new passphrase
 		if (passphrase == null) {
 			passphrase = new ArrayList<>();
-			for (int i = 0; i < Integer.valueOf(curPhraseSize.getText()); i++) {
-				passphrase.add("-1"); // Fill our arraylist with -1s to get empty slots used later.
+			int size = Integer.valueOf(curPhraseSize.getText());
+			for (int i = 0; i < size; i++) {
+				passphrase.add(null); // Fill our arraylist with empty slots, filled in later.
 			}
+			slots.shuffle(size);
 		}
 		
-		Map<Integer, Integer> data = cl.getData(); // Get our data from the image
-		
-		int rawValue = 0;
-		int value = 0;
-		
-		try {
-			// rawValue is used for debugging only, and is used to verify that our data is correct.
-			rawValue = data.get(0) * 10000 + data.get(1) * 1000 + data.get(2) * 100 + data.get(3) * 10 + data.get(4);
-			// Converts our 1-6 digit range into 0-5 to be used for base conversion. Yes, it works.
-			value = (data.get(0) - 1) * 10000 + (data.get(1) - 1) * 1000 + (data.get(2) - 1) * 100 + (data.get(3) - 1) * 10 + data.get(4) - 1;
-		} catch (NoSuchElementException e) {
-			System.out.println(data.values());
+		// rawValue is used for debugging only, and is used to verify that our data is correct.
+		long rawValue = 0;
+		for (int i = 0; i < roll.length; i++) {
+			rawValue = rawValue * ((dice.getSides() < 10) ? 10 : 100) + roll[i]; // Two digits per die when a face can be 10 or more
 		}
 		
-		try {
-			value = Integer.valueOf(Integer.toString(Integer.parseInt(Integer.toString(value), 6), 10)); // Actual conversion from base 6 to base 10
-		} catch (NumberFormatException e) {
-			e.printStackTrace();
+		int value = RollDecoder.decode(roll, dice.getSides());
+		if (value == RollDecoder.INVALID) {
 			System.err.println("Dice Code was " + rawValue + "!");
+			return false;
 		}
 		
 		// Generates the special characters first, and moves on to numbers and finally words once the quota has been reached for the respective word type.
@@ -420,15 +556,13 @@ public class Main {
 		} else
 			word = pg.getWord(DICTIONARY.DICT_NORMAL, value);
 			
-		// Find a random empty (value = "-1") position in the array
-		int pos;
-		do {
-			pos = rnd.nextInt(Integer.valueOf(curPhraseSize.getText()));
-		} while (!passphrase.get(pos).equals("-1"));
+		// The next of the empty positions, in an order shuffled when the phrase was started
+		int pos = slots.next();
 		
-		System.out.println("Got word " + word + "\tat pos " + pos + " with Dice Code " + rawValue + "!"); // Debug
+		ROLL_AGREEMENT.record(Math.round(cl.getConsensus().getConfidence() * 100));
 		passphrase.set(pos, word); // Sets our word to the passphrase
 		
+		return true;
 	}
 	
 }
@@ -0,0 +1,104 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A word list backed by a memory-mapped file. Used for large source dictionaries, which we'd rather not copy onto the heap.
+ * <p>
+ * The words themselves are never read until they are asked for; the OS pages them in as needed. The line offset index is kept in a direct buffer, so it does not count towards the heap either.
+ * Files are limited to 2 GB, as that's the most a single mapping can hold.
+ */
+public class MappedDictionaryStore implements WordList {
+	private final MappedByteBuffer	data;
+	private final IntBuffer			offsets;
+	private final int				size;
+	
+	private MappedDictionaryStore(MappedByteBuffer data, IntBuffer offsets, int size) {
+		this.data = data;
+		this.offsets = offsets;
+		this.size = size;
+	}
+	
+	/**
+	 * Maps a dictionary into memory and indexes its lines.
+	 * <p>
+	 * Lines are split as described in {@code LineIndex}.
+	 * <p>
+	 * 
+	 * @param file
+	 *            location of dictionary
+	 * @return the mapped dictionary
+	 * @throws IOException
+	 *             if the file could not be read, or is too large to be mapped
+	 */
+	public static MappedDictionaryStore open(String file) throws IOException {
+		MappedByteBuffer data;
+		try (FileChannel fc = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+			if (fc.size() >= Integer.MAX_VALUE)
+				throw new IOException(file + " is too large to be mapped");
+			data = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size()); // The mapping stays valid after the channel is closed.
+		}
+		
+		// Count the lines first, so the index can be allocated exactly once.
+		int size = LineIndex.count(data);
+		IntBuffer offsets = ByteBuffer.allocateDirect((size + 1) * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+		LineIndex.index(data, size, offsets);
+		
+		return new MappedDictionaryStore(data, offsets, size);
+	}
+	
+	/**
+	 * Returns a view of a word's UTF-8 bytes, without copying them out of the mapped file.
+	 * 
+	 * @param index
+	 *            zero-based line number
+	 * @return a read-only buffer holding exactly the word's bytes.
+	 */
+	public ByteBuffer slice(int index) {
+		int start = offsets.get(index);
+		int end = LineIndex.wordEnd(data, start, offsets.get(index + 1));
+		
+		ByteBuffer view = data.asReadOnlyBuffer();
+		view.limit(end).position(start);
+		return view.slice();
+	}
+	
+	@Override
+	public String getWord(int index) {
+		ByteBuffer word = slice(index);
+		byte[] bytes = new byte[word.remaining()];
+		word.get(bytes);
+		
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,76 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.util.ArrayDeque;
+
+import org.opencv.core.Mat;
+
+/**
+ * A pool of frame buffers.
+ * <p>
+ * A {@code Mat}'s pixels live in native memory, which the garbage collector doesn't see, and so isn't in any hurry to free. Rather than creating a new matrix for every frame, frames are taken from
+ * here and given back once they're done with. Reading a frame into a matrix that already has the right size reuses its buffer, so once the pool is warm no native memory is allocated at all.
+ * <p>
+ * Safe to use from several threads.
+ * <p>
+ */
+public class MatPool {
+	private final ArrayDeque<Mat>	free	= new ArrayDeque<>();
+	private final int				maxFree;
+	
+	/**
+	 * @param maxFree
+	 *            most matrices kept around for reuse. Any more than that are released when given back.
+	 */
+	public MatPool(int maxFree) {
+		this.maxFree = maxFree;
+	}
+	
+	/**
+	 * Takes a matrix from the pool, or creates one if the pool is empty.
+	 * 
+	 * @return a matrix whose contents are undefined
+	 */
+	public synchronized Mat acquire() {
+		Mat m = free.poll();
+		return (m != null) ? m : new Mat();
+	}
+	
+	/**
+	 * Gives a matrix back to the pool. It must not be used again by the caller.
+	 * 
+	 * @param m
+	 *            a matrix from {@code acquire}
+	 */
+	public synchronized void recycle(Mat m) {
+		if (free.size() < maxFree)
+			free.push(m);
+		else
+			m.release();
+	}
+	
+	/**
+	 * Releases every matrix held by the pool.
+	 */
+	public synchronized void clear() {
+		Mat m;
+		while ((m = free.poll()) != null)
+			m.release();
+	}
+}
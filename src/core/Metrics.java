@@ -0,0 +1,284 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Counters and latency histograms for the hot paths: capturing frames, running the cascades, looking up words and generating passphrases. Everything is lock-free, so recording from several
+ * threads at once doesn't make them wait on each other.
+ * <p>
+ * Off unless turned on with {@code setEnabled} or {@code -Ddiceware.metrics=true}. While off, nothing is recorded and {@code now()} doesn't even read the clock.
+ * <p>
+ * The usual pattern is to look a metric up once, into a static field, then time with it:
+ * 
+ * <pre>
+ * long start = Metrics.now();
+ * ...
+ * TIMER.recordSince(start);
+ * </pre>
+ */
+public final class Metrics {
+	private static volatile boolean						enabled		= Boolean.getBoolean("diceware.metrics");
+	private static final long							START		= System.nanoTime();
+	private static final Map<String, Counter>			counters	= new ConcurrentSkipListMap<>();	// Sorted, so exports are easy to read
+	private static final Map<String, Histogram>			histograms	= new ConcurrentSkipListMap<>();
+	
+	private Metrics() {
+	}
+	
+	/**
+	 * @param name
+	 * @return the counter with this name, which is created if it doesn't exist yet.
+	 */
+	public static Counter counter(String name) {
+		return counters.computeIfAbsent(name, n -> new Counter());
+	}
+	
+	/**
+	 * @param name
+	 * @return the histogram of durations in nanoseconds with this name, which is created if it doesn't exist yet.
+	 */
+	public static Histogram timer(String name) {
+		return histograms.computeIfAbsent(name, n -> new Histogram(true));
+	}
+	
+	/**
+	 * @param name
+	 * @return the histogram of plain values (e.g. counts) with this name, which is created if it doesn't exist yet.
+	 */
+	public static Histogram histogram(String name) {
+		return histograms.computeIfAbsent(name, n -> new Histogram(false));
+	}
+	
+	public static void setEnabled(boolean on) {
+		enabled = on;
+	}
+	
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * @return the current time in nanoseconds, to be passed to {@code Histogram.recordSince}, or 0 if metrics are off.
+	 */
+	public static long now() {
+		return enabled ? System.nanoTime() : 0;
+	}
+	
+	/**
+	 * Writes every metric, one per line. Durations are in microseconds, and rates are per second since the program started.
+	 * 
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void writeTo(Appendable out) throws IOException {
+		double seconds = (System.nanoTime() - START) / 1e9;
+		for (Map.Entry<String, Counter> e : counters.entrySet()) {
+			long count = e.getValue().get();
+			out.append(String.format("%s count=%d rate=%.1f/s%n", e.getKey(), count, count / seconds));
+		}
+		for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+			Histogram h = e.getValue();
+			double scale = h.nanos ? 1e3 : 1; // Nanoseconds to microseconds
+			String unit = h.nanos ? "us" : "";
+			out.append(String.format("%s count=%d mean=%.1f%s p50=%.1f%s p90=%.1f%s p99=%.1f%s max=%.1f%s%n", e.getKey(), h.getCount(), h.getMean() / scale, unit, h.getPercentile(50) / scale,
+					unit, h.getPercentile(90) / scale, unit, h.getPercentile(99) / scale, unit, h.getMax() / scale, unit));
+		}
+	}
+	
+	/**
+	 * Writes every metric to a file, replacing it.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void writeTo(String file) throws IOException {
+		try (Writer out = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+			writeTo(out);
+		}
+	}
+	
+	/**
+	 * Serves every metric as plain text on http://localhost:port/metrics. Only reachable from this machine.
+	 * 
+	 * @param port
+	 * @return the server, already running
+	 * @throws IOException
+	 *             if the port can't be bound
+	 */
+	public static HttpServer serve(int port) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/metrics", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				StringBuilder sb = new StringBuilder();
+				writeTo(sb);
+				byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+		});
+		server.start();
+		return server;
+	}
+	
+	/**
+	 * Counts events.
+	 */
+	public static final class Counter {
+		private final LongAdder count = new LongAdder();
+		
+		private Counter() {
+		}
+		
+		public void inc() {
+			if (enabled)
+				count.increment();
+		}
+		
+		public void add(long n) {
+			if (enabled)
+				count.add(n);
+		}
+		
+		public long get() {
+			return count.sum();
+		}
+	}
+	
+	/**
+	 * Records a distribution of values in log-linear buckets, the way HdrHistogram does: every power of two is split into 16 buckets, so any value is kept to within about 6%, and values under 32
+	 * are kept exactly. Covers every positive long in under a thousand buckets.
+	 */
+	public static final class Histogram {
+		private static final int	SUB_BITS	= 4;
+		private static final int	SUB_BUCKETS	= 1 << SUB_BITS;
+		private static final int	BUCKETS		= (64 - SUB_BITS) * SUB_BUCKETS;
+		
+		private final boolean		nanos;
+		private final AtomicLongArray	buckets	= new AtomicLongArray(BUCKETS);
+		private final LongAdder		count		= new LongAdder();
+		private final LongAdder		sum			= new LongAdder();
+		private final AtomicLong	max			= new AtomicLong();
+		
+		private Histogram(boolean nanos) {
+			this.nanos = nanos;
+		}
+		
+		/**
+		 * @param value
+		 *            must not be negative
+		 */
+		public void record(long value) {
+			if (!enabled || value < 0)
+				return;
+			
+			buckets.incrementAndGet(index(value));
+			count.increment();
+			sum.add(value);
+			for (long m = max.get(); value > m && !max.compareAndSet(m, value); m = max.get())
+				;
+		}
+		
+		/**
+		 * Records the time since {@code start}.
+		 * 
+		 * @param start
+		 *            a time from {@code Metrics.now()}. If that was 0, because metrics were off, nothing is recorded.
+		 */
+		public void recordSince(long start) {
+			if (start != 0)
+				record(System.nanoTime() - start);
+		}
+		
+		public long getCount() {
+			return count.sum();
+		}
+		
+		public double getMean() {
+			long n = count.sum();
+			return (n > 0) ? (double) sum.sum() / n : 0;
+		}
+		
+		public long getMax() {
+			return max.get();
+		}
+		
+		/**
+		 * @param percentile
+		 *            from 0 to 100
+		 * @return the value that percentile of the recorded values are at or below, to within the bucket size, or 0 if nothing has been recorded.
+		 */
+		public double getPercentile(double percentile) {
+			long n = count.sum();
+			if (n == 0)
+				return 0;
+			
+			long target = Math.max(1, (long) Math.ceil(n * percentile / 100));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += buckets.get(i);
+				if (seen >= target)
+					return (i + 1 < BUCKETS) ? Math.min((lowest(i) + lowest(i + 1) - 1) / 2.0, max.get()) : max.get(); // Middle of the bucket
+			}
+			
+			return max.get();
+		}
+		
+		private static int index(long value) {
+			if (value < SUB_BUCKETS)
+				return (int) value;
+			
+			int exp = 63 - Long.numberOfLeadingZeros(value);
+			int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+			return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+		}
+		
+		/**
+		 * @return the smallest value that goes into a bucket.
+		 */
+		private static long lowest(int index) {
+			if (index < SUB_BUCKETS)
+				return index;
+			
+			int exp = index / SUB_BUCKETS + SUB_BITS - 1;
+			int sub = index % SUB_BUCKETS;
+			return (long) (SUB_BUCKETS + sub) << (exp - SUB_BITS);
+		}
+	}
+}
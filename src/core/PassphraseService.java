@@ -0,0 +1,144 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+
+/**
+ * Generates passphrases without any GUI or webcam involvement. Dice rolls are replaced by cryptographically secure random numbers, and the words are looked up through {@code PasswordGenerator}
+ * the same way {@code Main} does it.
+ */
+public class PassphraseService {
+	private static final Metrics.Histogram	PHRASE_TIME	= Metrics.timer("passphraseService.generate");
+	private static final Metrics.Counter	PHRASES		= Metrics.counter("passphraseService.phrases");
+	
+	private PasswordGenerator	pg;
+	private EntropyPool			rnd;
+	private SlotAssigner		slots;
+	
+	/**
+	 * @param pg
+	 *            generator whose dictionaries the words are taken from
+	 */
+	public PassphraseService(PasswordGenerator pg) {
+		this(pg, new SecureRandom());
+	}
+	
+	/**
+	 * @param pg
+	 *            generator whose dictionaries the words are taken from
+	 * @param rnd
+	 *            source of every random draw made by this service. Services running on different threads should not share one.
+	 */
+	public PassphraseService(PasswordGenerator pg, SecureRandom rnd) {
+		this.pg = pg;
+		this.rnd = new EntropyPool(rnd); // Many small draws per phrase, so buffer them
+		this.slots = new SlotAssigner(this.rnd);
+	}
+	
+	/**
+	 * Calculates the number of words in a passphrase.
+	 * <p>
+	 * The phrase is at least {@code minSize} words long, but grows if the special character and number "words" don't fit into that. Pass 0 for a word type that isn't used.
+	 * <p>
+	 * 
+	 * @param minSize
+	 *            minimum phrase length
+	 * @param numSp
+	 *            number of special character "words"
+	 * @param numNum
+	 *            number of number "words"
+	 * @return the number of words in the phrase.
+	 */
+	public static int getPhraseSize(int minSize, int numSp, int numNum) {
+		return Math.max(minSize, numSp + numNum);
+	}
+	
+	/**
+	 * Generates a single passphrase.
+	 * <p>
+	 * Like with dice, the special character words are picked first, then the numbers, then the normal words. Every word is then put in a random position of the phrase.
+	 * <p>
+	 * 
+	 * @param minSize
+	 *            minimum phrase length
+	 * @param numSp
+	 *            number of special character "words"
+	 * @param numNum
+	 *            number of number "words"
+	 * @return the words of the passphrase, in order.
+	 * @throws IllegalStateException
+	 *             if the dictionaries are missing and could not be generated
+	 */
+	public String[] generate(int minSize, int numSp, int numNum) {
+		long start = Metrics.now();
+		String[] phrase = new String[getPhraseSize(minSize, numSp, numNum)];
+		slots.shuffle(phrase.length); // So the special characters and numbers can be anywhere in the phrase
+		
+		for (int i = 0; i < phrase.length; i++) {
+			DICTIONARY dict = DICTIONARY.DICT_NORMAL;
+			if (i < numSp)
+				dict = DICTIONARY.DICT_SPECIAL;
+			else if (i < numSp + numNum)
+				dict = DICTIONARY.DICT_NUMBERS;
+			
+			String word = pg.getWord(dict, rnd.nextInt(pg.getCardinality()), rnd); // Equivalent to a roll of the dice
+			if (word == null)
+				throw new IllegalStateException("Could not read the " + dict + " dictionary");
+			phrase[slots.next()] = word;
+		}
+		
+		PHRASE_TIME.recordSince(start);
+		PHRASES.inc();
+		return phrase;
+	}
+	
+	/**
+	 * Generates many passphrases, and writes them one per line.
+	 * <p>
+	 * The output is neither flushed nor closed, so callers should supply a buffered writer or a {@code StringBuilder}.
+	 * <p>
+	 * 
+	 * @param count
+	 *            number of passphrases to generate
+	 * @param minSize
+	 *            minimum phrase length
+	 * @param numSp
+	 *            number of special character "words"
+	 * @param numNum
+	 *            number of number "words"
+	 * @param separator
+	 *            written between the words of a passphrase
+	 * @param out
+	 *            destination of the passphrases
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void generate(long count, int minSize, int numSp, int numNum, String separator, Appendable out) throws IOException {
+		for (long i = 0; i < count; i++) {
+			String[] phrase = generate(minSize, numSp, numNum);
+			for (int y = 0; y < phrase.length; y++) {
+				if (y > 0)
+					out.append(separator);
+				out.append(phrase[y]);
+			}
+			out.append('\n');
+		}
+	}
+}
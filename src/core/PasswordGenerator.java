@@ -17,37 +17,80 @@
 
 package core;
 
-import java.io.BufferedInputStream;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.util.BitSet;
-import java.util.stream.Stream;
-
-import javax.xml.bind.annotation.adapters.HexBinaryAdapter;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.regex.Pattern;
 
 public class PasswordGenerator {
 	private final int		SPECIAL_DICT_SIZE	= 10000;
-	private final int		numDice				= 5;
-	private final int		cardinality			= (int) Math.pow(6, numDice);
-	private final String	wordDict			= "res/wordDict.txt";
+	private final int		WRITE_BLOCK_SIZE	= 64 * 1024;
+	private final DiceConfig	dice;
+	private final int		cardinality;
+	private int				specialDictSize;
+	private int				specialWordLength	= 6;
+	private String			wordDict			= "res/wordDict.txt";
 	private final String	spCharDict			= "res/spCharDict.txt";
 	private final String	numDict				= "res/numDict.txt";
 	private final String	outputFile			= "res/output.txt";
-	private SecureRandom	rnd					= new SecureRandom();
-	private int				dictSize			= getDictSize(wordDict);
+	private final String	manifestFile		= "res/dictionary.properties";
+	private static final String	SPECIAL_HASH	= "specialSha256";	// Manifest parameters
+	private static final String	NUMBERS_HASH	= "numbersSha256";
+	private DictionaryManifest	manifest;
+	private FileTime		manifestTime;	// When the manifest file was last read or written by us
+	private EntropyPool		rnd					= new EntropyPool(new SecureRandom());
 	private char[]			specialChars		= "~!@#$%^&*()_+-={}:\"<>?[];',./".toCharArray();
 	private char[]			numberChars			= "0123456789".toCharArray();
-	private PrintWriter		writer				= null;
+	private Map<DICTIONARY, WordList>	stores	= new EnumMap<>(DICTIONARY.class);
+	private boolean			generationFailed;	// So a failure is only reported once, rather than on every lookup
+	
+	// getPassStrength's patterns, compiled once rather than on every call
+	private static final Pattern	LOWER			= Pattern.compile(".*[a-z]");
+	private static final Pattern	UPPER			= Pattern.compile(".*[A-Z]");
+	private static final Pattern	DIGIT			= Pattern.compile(".*[0-9]");
+	private static final Pattern	SYMBOL			= Pattern.compile(".*[~`\\-+=_|}{\":L?><][';/.,]");
+	private static final Pattern	SHIFTED_DIGIT	= Pattern.compile(".*[!@#$%^&*()]");
+	
+	private static final Metrics.Histogram		BUILD_TIME	= Metrics.timer("passwordGenerator.generateDict");
+	private static final Metrics.Histogram[]	LOOKUP_TIME	= new Metrics.Histogram[DICTIONARY.values().length];
+	static {
+		for (DICTIONARY dict : DICTIONARY.values())
+			LOOKUP_TIME[dict.ordinal()] = Metrics.timer("passwordGenerator.getWord." + dict);
+	}
 												
+	/**
+	 * Uses the classic five six-sided dice.
+	 */
+	public PasswordGenerator() {
+		this(DiceConfig.DEFAULT);
+	}
+	
+	/**
+	 * @param dice
+	 *            the dice that are rolled for each word. The word list has one word for every possible roll.
+	 */
+	public PasswordGenerator(DiceConfig dice) {
+		this.dice = dice;
+		this.cardinality = dice.getCardinality();
+		// The special dictionaries need at least one entry per roll, and are larger when they can be, so that the random offset in getWord has room to move.
+		this.specialDictSize = Math.max(SPECIAL_DICT_SIZE, cardinality);
+	}
+	
 	/**
 	 * Generates dictionaries (word lists). By default, it only generates a word list.
 	 * <p>
@@ -57,72 +100,190 @@ public class PasswordGenerator {
 	 * 
 	 * @param allowSpecial
 	 * @param allowNumbers
+	 * @return false if the word list could not be generated.
 	 */
-	public void generateDict(boolean allowSpecial, boolean allowNumbers) {
-		System.out.println("Generating dictionaries...");
+	public boolean generateDict(boolean allowSpecial, boolean allowNumbers) {
+		long start = Metrics.now();
+		System.err.println("Generating dictionaries...");
 		
+		MappedDictionaryStore source;
 		try {
-			writer = new PrintWriter(outputFile, "UTF-8");
-		} catch (FileNotFoundException | UnsupportedEncodingException e) {
+			source = MappedDictionaryStore.open(wordDict); // Index the source list once, rather than reading it once per word.
+		} catch (IOException e) {
 			e.printStackTrace();
+			return false;
 		}
 		
-		BitSet wordList = new BitSet(dictSize); // Used to confirm that a word isn't in the dictionary twice.
+		if (source.size() < cardinality) {
+			System.err.println(wordDict + " only has " + source.size() + " words, but " + cardinality + " are needed for " + dice + "! Use a larger source dictionary.");
+			return false;
+		}
 		
-		while (wordList.cardinality() < cardinality) { // while dice dictionary needs to be populated
-			// Get a random word
-			int next = rnd.nextInt(dictSize);
-			while (wordList.get(next)) // and until a unique word appears...
-				next = rnd.nextInt(dictSize); // try, try again.
-				
-			try (Stream<String> lines = Files.lines(Paths.get(wordDict))) {
-				// Write to file and note the word as used
-				writer.println(lines.skip(next).findFirst().get());
-				writer.flush();
-				wordList.set(next, true);
-			} catch (IOException e) {
-				e.printStackTrace();
+		/*
+		 * Partial Fisher-Yates shuffle. After i iterations, the first i positions hold a uniformly random selection of i distinct words, so we only need to shuffle as far as our cardinality rather
+		 * than the entire source list, and we never have to retry on a word that has already been used. Only the positions that were actually swapped are remembered, so memory use depends on the
+		 * cardinality and not the size of the source list.
+		 */
+		SparsePermutation order = new SparsePermutation(source.size(), cardinality);
+		
+		// The old manifest describes the word list that is about to be replaced. A new one is only saved once every dictionary has been written.
+		manifest = null;
+		manifestTime = null;
+		try {
+			Files.deleteIfExists(Paths.get(manifestFile));
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		
+		// The word list is hashed on its way to the disk, so it never has to be read back for its ID.
+		MessageDigest digest = DictionaryManifest.newDigest();
+		try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new DigestOutputStream(Files.newOutputStream(Paths.get(outputFile)), digest), StandardCharsets.UTF_8))) {
+			for (int i = 0; i < cardinality; i++) {
+				out.write(source.getWord(order.swap(i, i + rnd.nextInt(source.size() - i))));
+				out.newLine();
 			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
 		}
 		
-		// Creates the other dictionaries if true.
-		if (allowSpecial)
-			createSpecialDict(specialChars, spCharDict);
-			
-		if (allowNumbers)
-			createSpecialDict(numberChars, numDict);
+		// Creates the other dictionaries if true. They're hashed on the way to the disk too, so their compiled copies can be checked against them.
+		MessageDigest specialDigest = DictionaryManifest.newDigest();
+		if (allowSpecial && !createSpecialDict(specialChars, spCharDict, specialDigest))
+			return false;
 			
-		if (writer != null)
-			writer.close();
+		MessageDigest numberDigest = DictionaryManifest.newDigest();
+		if (allowNumbers && !createSpecialDict(numberChars, numDict, numberDigest))
+			return false;
 			
-		System.out.println("Done."); // Generation of dictionaries finished.
+		String hash = DictionaryManifest.toHex(digest.digest());
+		Properties parameters = new Properties();
+		parameters.setProperty("dice", dice.toString());
+		parameters.setProperty("source", wordDict);
+		parameters.setProperty("special", String.valueOf(allowSpecial));
+		parameters.setProperty("numbers", String.valueOf(allowNumbers));
+		parameters.setProperty("specialDictSize", String.valueOf(specialDictSize));
+		parameters.setProperty("specialWordLength", String.valueOf(specialWordLength));
+		if (allowSpecial)
+			parameters.setProperty(SPECIAL_HASH, DictionaryManifest.toHex(specialDigest.digest()));
+		if (allowNumbers)
+			parameters.setProperty(NUMBERS_HASH, DictionaryManifest.toHex(numberDigest.digest()));
+		try {
+			manifest = new DictionaryManifest(hash, Files.size(Paths.get(outputFile)), cardinality, parameters);
+			manifest.save(manifestFile);
+			manifestTime = Files.getLastModifiedTime(Paths.get(manifestFile));
+		} catch (IOException e) {
+			e.printStackTrace(); // Only the cached ID is lost. getDictHash will work it out from the word list instead.
+		}
+		
+		// Compiled copies, so that later runs can start without reading and indexing the text.
+		try {
+			CompiledDictionary.compile(outputFile, hash, CompiledDictionary.getCompiledName(outputFile));
+			if (allowSpecial)
+				CompiledDictionary.compile(spCharDict, parameters.getProperty(SPECIAL_HASH), CompiledDictionary.getCompiledName(spCharDict));
+			if (allowNumbers)
+				CompiledDictionary.compile(numDict, parameters.getProperty(NUMBERS_HASH), CompiledDictionary.getCompiledName(numDict));
+		} catch (IOException e) {
+			e.printStackTrace(); // The text dictionaries are still there, just slower to load.
+		}
+		
+		stores.clear(); // Anything loaded before is now stale.
+		generationFailed = false;
+		
+		BUILD_TIME.recordSince(start);
+		System.err.println("Done."); // Generation of dictionaries finished.
+		return true;
 	}
 	
 	/**
 	 * Helper function. Generates a special dictionary.
 	 * <p>
-	 * Generates a sequence of characters by picking 6 random ones from the {@code chars} param to be used as a word. Dictionary size is defined by the final variable {@code SPECIAL_DICT_SIZE}.
+	 * Generates a sequence of characters by picking {@code specialWordLength} random ones from the {@code chars} param to be used as a word. Dictionary size is {@code specialDictSize}.
+	 * <p>
+	 * Words are written straight into a reusable byte buffer, which is written to disk a block at a time, so nothing is allocated per word.
 	 * <p>
 	 * 
 	 * @param chars
-	 *            character array of valid characters to be used in each word
+	 *            character array of valid characters to be used in each word. Must all be ASCII.
 	 * @param loc
 	 *            output location of dictionary.
+	 * @return false if the dictionary could not be written.
 	 */
-	private void createSpecialDict(char[] chars, String loc) {
-		try {
-			writer = new PrintWriter(loc, "UTF-8");
-		} catch (FileNotFoundException | UnsupportedEncodingException e) {
-			e.printStackTrace();
+	boolean createSpecialDict(char[] chars, String loc) {
+		return createSpecialDict(chars, loc, null);
+	}
+	
+	/**
+	 * @param chars
+	 * @param loc
+	 * @param digest
+	 *            updated with everything written, or null
+	 * @return false if the dictionary could not be written.
+	 */
+	private boolean createSpecialDict(char[] chars, String loc, MessageDigest digest) {
+		byte[] alphabet = new byte[chars.length];
+		for (int i = 0; i < chars.length; i++) {
+			if (chars[i] > 0x7F)
+				throw new IllegalArgumentException("Special dictionaries only support ASCII, not " + chars[i]);
+			alphabet[i] = (byte) chars[i];
 		}
 		
-		for (int i = 0; i < SPECIAL_DICT_SIZE; i++) {
-			String toFile = "";
-			for (int y = 0; y < 6; y++)
-				toFile += chars[rnd.nextInt(chars.length)];
-			writer.println(toFile);
+		int lineLength = specialWordLength + 1;
+		int linesPerBlock = Math.max(1, WRITE_BLOCK_SIZE / lineLength);
+		ByteBuffer block = ByteBuffer.allocate(linesPerBlock * lineLength);
+		byte[] buf = block.array();
+		
+		try (FileChannel fc = FileChannel.open(Paths.get(loc), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (int written = 0; written < specialDictSize;) {
+				int lines = Math.min(linesPerBlock, specialDictSize - written);
+				int pos = 0;
+				for (int i = 0; i < lines; i++) {
+					for (int y = 0; y < specialWordLength; y++)
+						buf[pos++] = alphabet[rnd.nextInt(alphabet.length)];
+					buf[pos++] = '\n';
+				}
+				
+				if (digest != null)
+					digest.update(buf, 0, pos);
+				block.clear();
+				block.limit(pos);
+				while (block.hasRemaining())
+					fc.write(block);
+				written += lines;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
 		}
 		
+		return true;
+	}
+	
+	/**
+	 * Sets the number of characters in each special character and number "word". Takes effect the next time the dictionaries are generated.
+	 * 
+	 * @param length
+	 *            characters per word, 6 by default
+	 */
+	public void setSpecialWordLength(int length) {
+		if (length < 1)
+			throw new IllegalArgumentException("Words need at least one character");
+			
+		specialWordLength = length;
+	}
+	
+	/**
+	 * Sets the number of words in the special character and number dictionaries. Takes effect the next time the dictionaries are generated.
+	 * 
+	 * @param size
+	 *            number of words. Must be at least our cardinality, so that every roll has a word.
+	 */
+	public void setSpecialDictSize(int size) {
+		if (size < cardinality)
+			throw new IllegalArgumentException("Special dictionaries need at least " + cardinality + " words for " + dice);
+			
+		specialDictSize = size;
 	}
 	
 	/**
@@ -140,21 +301,10 @@ public class PasswordGenerator {
 		if (file.equals(outputFile))
 			return cardinality;
 		if (file.equals(numDict))
-			return SPECIAL_DICT_SIZE;
+			return specialDictSize;
 			
-		try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
-			byte[] c = new byte[1024];
-			int count = 0;
-			int readChars = 0;
-			boolean empty = true;
-			while ((readChars = is.read(c)) != -1) {
-				empty = false;
-				for (int i = 0; i < readChars; ++i)
-					if (c[i] == '\n')
-						++count;
-						
-			}
-			return (count == 0 && !empty) ? 1 : count;
+		try {
+			return MappedDictionaryStore.open(file).size();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -163,16 +313,57 @@ public class PasswordGenerator {
 	}
 	
 	/**
-	 * Generates a dictionary ID by hashing (via MD5) our dictionary
+	 * Sets the word list that {@code generateDict} picks its words from. Large lists are fine, as they are memory-mapped rather than read onto the heap.
+	 * <p>
+	 * 
+	 * @param file
+	 *            location of the source dictionary. Must contain at least as many words as our cardinality.
+	 */
+	public void setSourceDict(String file) {
+		int size = getDictSize(file);
+		if (size < cardinality)
+			throw new IllegalArgumentException(file + " only has " + size + " words, but " + cardinality + " are needed!");
+			
+		wordDict = file;
+	}
+	
+	/**
+	 * Gets the dictionary ID: the SHA-256 hash of our word list.
+	 * <p>
+	 * The hash is worked out while {@code generateDict} writes the word list, and kept in a manifest next to it, so this doesn't read the word list. Only if there is no manifest (or it doesn't match
+	 * the word list's size, or is older than the word list) is the word list hashed, once, and a manifest written for next time.
 	 * <p>
 	 * 
-	 * @return Dictionary ID
+	 * @return Dictionary ID, or null if there is no word list
 	 */
 	public String getDictHash() {
 		try {
 			// The word dictionary is always generated, so we use that to computer our "ID"
-			return new HexBinaryAdapter().marshal(MessageDigest.getInstance("MD5").digest(Files.readAllBytes(Paths.get(outputFile))));
-		} catch (NoSuchAlgorithmException | IOException e) {
+			Path list = Paths.get(outputFile);
+			Path saved = Paths.get(manifestFile);
+			long size = Files.size(list);
+			FileTime savedTime = Files.exists(saved) ? Files.getLastModifiedTime(saved) : null;
+			if (savedTime != null && !savedTime.equals(manifestTime)) { // Not read yet, or rewritten since, e.g. by another generator
+				try {
+					manifest = DictionaryManifest.load(manifestFile);
+					manifestTime = savedTime;
+				} catch (IOException e) {
+					e.printStackTrace(); // Rebuilt below
+				}
+			}
+			
+			// The manifest has to be newer than the word list, so that a word list rewritten with the same size isn't given the old ID.
+			if (manifest == null || savedTime == null || !savedTime.equals(manifestTime) || manifest.getSize() != size || savedTime.compareTo(Files.getLastModifiedTime(list)) < 0) {
+				String hash = DictionaryManifest.hash(outputFile);
+				// If only the word list's timestamp changed, what it was generated with still holds.
+				Properties parameters = (manifest != null && manifest.getHash().equals(hash)) ? manifest.getParameters() : new Properties();
+				manifest = new DictionaryManifest(hash, size, getDictSize(outputFile), parameters);
+				manifest.save(manifestFile);
+				manifestTime = Files.getLastModifiedTime(saved);
+			}
+			
+			return manifest.getHash();
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
 		
@@ -181,23 +372,42 @@ public class PasswordGenerator {
 	}
 	
 	/**
-	 * Computes the approximate bits of entropy of a String.
+	 * Checks the word list against its manifest, by hashing it again. Not needed for {@code getDictHash}, but catches a word list that was edited without changing its size.
+	 * 
+	 * @return true if the word list still has the hash {@code getDictHash} returns
+	 */
+	public boolean verifyDictHash() {
+		String hash = getDictHash();
+		try {
+			return hash != null && manifest.verify(outputFile);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Computes the approximate bits of entropy of a String, from the kinds of characters in it. This badly undercounts a diceware phrase, which is far less random per character than its
+	 * characters suggest, but far more random per word.
 	 * <p>
 	 * 
 	 * @param password
 	 * @return Rounded number of bits of entropy, wrapped in a string.
+	 * @deprecated Use {@code getEntropyCalculator}, which counts the bits that went into making the passphrase.
 	 */
+	@Deprecated
 	public String getPassStrength(String password) {
 		int poolSize = 1;
-		if (password.matches(".*[a-z]"))
+		if (LOWER.matcher(password).matches())
 			poolSize += 26;
-		if (password.matches(".*[A-Z]"))
+		if (UPPER.matcher(password).matches())
 			poolSize += 26;
-		if (password.matches(".*[0-9]"))
+		if (DIGIT.matcher(password).matches())
 			poolSize += 10;
-		if (password.matches(".*[~`\\-+=_|}{\":L?><][';/.,]"))
+		if (SYMBOL.matcher(password).matches())
 			poolSize += 20;
-		if (password.matches(".*[!@#$%^&*()]"))
+		if (SHIFTED_DIGIT.matcher(password).matches())
 			poolSize += 10;
 			
 		// FIXME: the method used to calculate this may be incorrect. Verify and fix.
@@ -207,6 +417,49 @@ public class PasswordGenerator {
 		
 	}
 	
+	/**
+	 * Measures the dictionaries in use, rather than the settings for the next ones: the sizes come from the loaded dictionaries, and the word length from the manifest they were generated with.
+	 * Dictionaries without a manifest, such as the ones that come with the program, have their words measured instead.
+	 * <p>
+	 * 
+	 * @return a calculator for the exact entropy of passphrases made from these dictionaries.
+	 * @throws IllegalStateException
+	 *             if the dictionaries can't be loaded, or it isn't known how long their special character and number words are
+	 */
+	public synchronized EntropyCalculator getEntropyCalculator() {
+		if (!loadDicts())
+			throw new IllegalStateException("The dictionaries could not be loaded");
+			
+		int length = 0;
+		try {
+			if (getDictHash() != null)
+				length = Integer.parseInt(manifest.getParameter("specialWordLength")); // Also throws if it wasn't recorded
+		} catch (NumberFormatException e) {
+			length = Math.min(getWordLength(DICTIONARY.DICT_SPECIAL), getWordLength(DICTIONARY.DICT_NUMBERS));
+		}
+		if (length < 1)
+			throw new IllegalStateException("The special character and number words aren't all the same length, so their entropy is unknown. Generate new dictionaries.");
+			
+		return new EntropyCalculator(stores.get(DICTIONARY.DICT_NORMAL).size(), stores.get(DICTIONARY.DICT_SPECIAL).size(), stores.get(DICTIONARY.DICT_NUMBERS).size(), length,
+				(int) new String(specialChars).chars().distinct().count(), (int) new String(numberChars).chars().distinct().count());
+	}
+	
+	/**
+	 * Helper function. Measures the words of a loaded dictionary.
+	 * 
+	 * @param dict
+	 * @return the length every word in the dictionary has, or 0 if they don't all have the same length.
+	 */
+	private int getWordLength(DICTIONARY dict) {
+		WordList store = stores.get(dict);
+		int length = (store.size() > 0) ? store.getWord(0).length() : 0;
+		for (int i = 1; i < store.size(); i++)
+			if (store.getWord(i).length() != length)
+				return 0;
+				
+		return length;
+	}
+	
 	/**
 	 * Retrieves a word from the dictionaries.
 	 * <p>
@@ -219,47 +472,185 @@ public class PasswordGenerator {
 	 * @return the word found.
 	 */
 	public String getWord(DICTIONARY dict, int value) {
-		int randOffset;
+		return getWord(dict, value, rnd);
+	}
+	
+	/**
+	 * Retrieves a word from the dictionaries, using the given random number generator for the lookup offset.
+	 * <p>
+	 * Once the dictionaries are loaded (see {@code loadDicts()}), this may be called from several threads at once, as long as each thread brings its own {@code rnd}.
+	 * <p>
+	 * 
+	 * @param dict
+	 * @param value
+	 * @param rnd
+	 *            source of the offset into the larger dictionaries
+	 * @return the word found, or null if there is none for this value.
+	 */
+	public String getWord(DICTIONARY dict, int value, Random rnd) {
+		long start = Metrics.now();
+		String word = lookUp(dict, value, rnd);
+		LOOKUP_TIME[dict.ordinal()].recordSince(start);
+		return word;
+	}
+	
+	/**
+	 * The lookup itself, so that {@code getWord} can time it.
+	 */
+	private String lookUp(DICTIONARY dict, int value, Random rnd) {
+		int randOffset = 0;
 		
-		// Ensure that our dictionaries exist.
-		verifyDicts();
+		WordList store = stores.get(dict);
+		if (store == null) {
+			// Ensure that our dictionaries exist. Only needed on the first lookup, as loaded dictionaries stay in memory.
+			if (!verifyDicts())
+				return null;
+			store = getStore(dict);
+			if (store == null)
+				return null;
+		}
 		
-		if (dict.ordinal() == 0) {
-			try (Stream<String> lines = Files.lines(Paths.get(outputFile))) {
-				return lines.skip(value).findFirst().get();
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+		// Either not a valid roll, or the dictionary was made for other dice and couldn't be replaced.
+		if (value < 0 || value >= cardinality || store.size() < cardinality)
+			return null;
+			
+		if (dict != DICTIONARY.DICT_NORMAL && store.size() > cardinality)
+			randOffset = rnd.nextInt(store.size() - cardinality);
+			
+		return store.getWord(value + randOffset);
+	}
+	
+	/**
+	 * Loads every dictionary into memory, generating them first if they don't exist yet.
+	 * <p>
+	 * Lookups never modify a loaded dictionary, so after this returns they can be shared between threads.
+	 * <p>
+	 * 
+	 * @return false if a dictionary could not be generated or read. The reason has already been printed.
+	 */
+	public synchronized boolean loadDicts() {
+		if (!verifyDicts())
+			return false;
 			
-		} else if (dict.ordinal() == 1) {
-			randOffset = rnd.nextInt(getDictSize(spCharDict) - 7776);
-			try (Stream<String> lines = Files.lines(Paths.get(spCharDict))) {
-				return lines.skip(value + randOffset).findFirst().get();
+		boolean loaded = true;
+		for (DICTIONARY dict : DICTIONARY.values())
+			loaded &= getStore(dict) != null;
+		return loaded;
+	}
+	
+	/**
+	 * Returns the number of words in the generated word list, which is also the number of distinct values our dice can roll.
+	 * 
+	 * @return cardinality of the dice
+	 */
+	public int getCardinality() {
+		return cardinality;
+	}
+	
+	/**
+	 * Returns the dice this generator's dictionaries are made for.
+	 * 
+	 * @return the dice configuration
+	 */
+	public DiceConfig getDice() {
+		return dice;
+	}
+	
+	/**
+	 * Helper function. Returns the in-memory copy of a dictionary, loading it from disk the first time it is requested.
+	 * <p>
+	 * 
+	 * @param dict
+	 * @return the dictionary, or null if it could not be read.
+	 */
+	private WordList getStore(DICTIONARY dict) {
+		WordList store = stores.get(dict);
+		if (store == null) {
+			String file = getDictFile(dict);
+			Path compiled = Paths.get(CompiledDictionary.getCompiledName(file));
+			try {
+				// The compiled dictionary is mapped rather than read, so it's ready straight away. It's only used if it was compiled from the text the manifest describes, and is intact.
+				String hash = getManifestHash(dict);
+				if (hash != null && Files.exists(compiled)) {
+					CompiledDictionary candidate = CompiledDictionary.open(compiled.toString());
+					if (hash.equals(candidate.getSourceHash()) && candidate.getSourceSize() == Files.size(Paths.get(file)) && candidate.verify())
+						store = candidate;
+					else
+						System.err.println(compiled + " doesn't match " + file + ", reading the text instead.");
+				}
 			} catch (IOException e) {
-				e.printStackTrace();
+				e.printStackTrace(); // Fall back on the text
 			}
 			
-		} else if (dict.ordinal() == 2) {
-			randOffset = rnd.nextInt(SPECIAL_DICT_SIZE - 7776);
-			try (Stream<String> lines = Files.lines(Paths.get(numDict))) {
-				return lines.skip(value + randOffset).findFirst().get();
+			try {
+				if (store == null)
+					store = DictionaryStore.load(file);
+				stores.put(dict, store);
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
-			
 		}
 		
-		// This should never happen.
-		return null;
+		return store;
 	}
 	
 	/**
-	 * Helper function. Generates all the dictionaries if they haven't been generated yet.
+	 * Helper function. Looks up a dictionary's hash in the manifest, which {@code getDictHash} checks against the word list first.
+	 * 
+	 * @param dict
+	 * @return SHA-256 of the dictionary, or null if it isn't known.
 	 */
-	private void verifyDicts() {
+	private String getManifestHash(DICTIONARY dict) {
+		if (getDictHash() == null)
+			return null;
+			
+		switch (dict) {
+			case DICT_SPECIAL:
+				return manifest.getParameter(SPECIAL_HASH);
+			case DICT_NUMBERS:
+				return manifest.getParameter(NUMBERS_HASH);
+			default:
+				return manifest.getHash();
+		}
+	}
+	
+	/**
+	 * Helper function. Maps a dictionary type to its location on disk.
+	 * 
+	 * @param dict
+	 * @return location of dictionary
+	 */
+	private String getDictFile(DICTIONARY dict) {
+		switch (dict) {
+			case DICT_SPECIAL:
+				return spCharDict;
+			case DICT_NUMBERS:
+				return numDict;
+			default:
+				return outputFile;
+		}
+	}
+	
+	/**
+	 * Helper function. Generates all the dictionaries if they haven't been generated yet, or if they were generated for different dice.
+	 * 
+	 * @return false if the dictionaries needed generating but couldn't be. This is only attempted once, so the reason is only printed once.
+	 */
+	private boolean verifyDicts() {
+		if (generationFailed)
+			return false;
+			
 		if (Files.notExists(Paths.get(outputFile))) {
-			generateDict(true, true);
+			generationFailed = !generateDict(true, true);
+			return !generationFailed;
 		}
 		
+		// Left over from other dice, so there isn't exactly one word for every roll.
+		WordList store = getStore(DICTIONARY.DICT_NORMAL);
+		if (store != null && store.size() != cardinality) {
+			System.err.println("Dictionaries were made for other dice, replacing them.");
+			generationFailed = !generateDict(true, true);
+		}
+		return !generationFailed;
 	}
 }
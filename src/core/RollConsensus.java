@@ -0,0 +1,224 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the dice have settled.
+ * <p>
+ * The classifier misreads a die every now and then, so rather than trusting a single frame, each die votes on its value over the last few frames. A roll only counts as stable once every die has
+ * a full window of readings and enough of them agree.
+ * <p>
+ * Readings are written by the detection thread, and the stable roll can be read or waited on from any other thread.
+ */
+public class RollConsensus {
+	private final int							numDice;
+	private final int							sides;
+	private final int							window;
+	private final double						threshold;
+	
+	// One ring buffer per die, all in one array: die d's readings are history[d * window] to history[(d + 1) * window - 1]
+	private final int[]							history;
+	private final int[]							filled;
+	private final int[]							next;
+	private final int[]							votes;
+	private final int[]							winner;
+	private final double[]						confidence;
+	private int[]								stableRoll;
+	
+	private final List<CompletableFuture<int[]>>	waiting	= new ArrayList<>();
+	
+	/**
+	 * @param numDice
+	 *            number of dice in a roll
+	 * @param sides
+	 *            number of sides on each die
+	 * @param window
+	 *            number of frames each die votes over
+	 * @param threshold
+	 *            fraction of the window that must agree, between 0 (exclusive) and 1 (inclusive)
+	 */
+	public RollConsensus(int numDice, int sides, int window, double threshold) {
+		if (window < 1 || threshold <= 0 || threshold > 1)
+			throw new IllegalArgumentException("Need a positive window, and a threshold between 0 and 1");
+		
+		this.numDice = numDice;
+		this.sides = sides;
+		this.window = window;
+		this.threshold = threshold;
+		this.history = new int[numDice * window];
+		this.filled = new int[numDice];
+		this.next = new int[numDice];
+		this.votes = new int[sides + 1];
+		this.winner = new int[numDice];
+		this.confidence = new double[numDice];
+	}
+	
+	/**
+	 * Records the reading of a die for the current frame.
+	 * 
+	 * @param die
+	 *            slot of the die
+	 * @param value
+	 *            number of pips seen
+	 */
+	public synchronized void submit(int die, int value) {
+		if (die < 0 || die >= numDice)
+			return;
+		
+		history[die * window + next[die]] = value;
+		next[die] = (next[die] + 1) % window;
+		if (filled[die] < window)
+			filled[die]++;
+	}
+	
+	/**
+	 * Forgets every reading of a die, e.g. because it has left the frame.
+	 * 
+	 * @param die
+	 *            slot of the die
+	 */
+	public synchronized void clear(int die) {
+		if (die < 0 || die >= numDice)
+			return;
+		
+		filled[die] = 0;
+		next[die] = 0;
+	}
+	
+	/**
+	 * Forgets every reading of every die.
+	 */
+	public synchronized void reset() {
+		for (int die = 0; die < numDice; die++)
+			clear(die);
+		endFrame();
+	}
+	
+	/**
+	 * Counts the votes once all of a frame's readings are in, and wakes up anyone waiting if the roll is stable.
+	 */
+	public synchronized void endFrame() {
+		boolean stable = true;
+		
+		for (int die = 0; die < numDice; die++) {
+			for (int v = 0; v < votes.length; v++)
+				votes[v] = 0;
+			
+			int best = 0;
+			for (int i = 0; i < filled[die]; i++) {
+				int value = history[die * window + i];
+				if (value >= 0 && value <= sides && ++votes[value] > votes[best])
+					best = value;
+			}
+			
+			winner[die] = best;
+			confidence[die] = (double) votes[best] / window;
+			
+			// Zero pips is never a real face
+			if (filled[die] < window || best == 0 || confidence[die] < threshold)
+				stable = false;
+		}
+		
+		if (!stable) {
+			stableRoll = null;
+			return;
+		}
+		
+		stableRoll = winner.clone();
+		for (CompletableFuture<int[]> f : waiting)
+			f.complete(stableRoll.clone());
+		waiting.clear();
+		notifyAll();
+	}
+	
+	/**
+	 * @return true if every die agrees with itself over the whole window.
+	 */
+	public synchronized boolean isStable() {
+		return stableRoll != null;
+	}
+	
+	/**
+	 * @return the stable roll, or null if the dice haven't settled.
+	 */
+	public synchronized int[] getStableRoll() {
+		return (stableRoll != null) ? stableRoll.clone() : null;
+	}
+	
+	/**
+	 * @param die
+	 *            slot of the die
+	 * @return the fraction of the window that agrees with the die's most common reading.
+	 */
+	public synchronized double getConfidence(int die) {
+		return confidence[die];
+	}
+	
+	/**
+	 * @return the confidence of the least certain die.
+	 */
+	public synchronized double getConfidence() {
+		double min = 1;
+		for (double c : confidence)
+			min = Math.min(min, c);
+		return min;
+	}
+	
+	/**
+	 * Waits until the roll is stable.
+	 * 
+	 * @param timeout
+	 * @param unit
+	 * @return the stable roll, or null if the dice didn't settle in time.
+	 * @throws InterruptedException
+	 */
+	public synchronized int[] awaitStableRoll(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (stableRoll == null) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0)
+				return null;
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+		
+		return stableRoll.clone();
+	}
+	
+	/**
+	 * Returns a future that completes with the roll as soon as it is stable, which may be right away. Cancel it to stop waiting.
+	 * <p>
+	 * The future is completed on the detection thread, so anything that touches Swing must be passed on to the event thread.
+	 * <p>
+	 * 
+	 * @return the future stable roll
+	 */
+	public synchronized CompletableFuture<int[]> awaitStableRollAsync() {
+		if (stableRoll != null)
+			return CompletableFuture.completedFuture(stableRoll.clone());
+		
+		CompletableFuture<int[]> f = new CompletableFuture<>();
+		waiting.removeIf(CompletableFuture::isDone); // Drop any that were cancelled
+		waiting.add(f);
+		return f;
+	}
+}
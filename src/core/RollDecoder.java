@@ -0,0 +1,162 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+/**
+ * Converts a roll of the dice into a dictionary line number.
+ * <p>
+ * Each die is a digit in base {@code sides}, with the first die being the most significant. A die showing 1 is the digit 0, and a die showing {@code sides} is the digit {@code sides - 1}. So for
+ * five d6, 11111 is line 0, 11112 is line 1, and 66666 is line 7775.
+ * <p>
+ * Nothing here allocates or throws on bad input; an invalid roll simply decodes to {@code INVALID}.
+ * <p>
+ */
+public final class RollDecoder {
+	/** Returned for a roll that has a die out of range, or that doesn't fit in an int. */
+	public static final int		INVALID			= -1;
+	
+	private static final int	BITS_PER_DIE	= 8;
+	private static final int	MAX_PACKED_DICE	= Long.SIZE / BITS_PER_DIE;
+	
+	private RollDecoder() {
+	}
+	
+	/**
+	 * Decodes a roll.
+	 * 
+	 * @param faces
+	 *            the face shown by each die, from 1 to {@code sides}
+	 * @param sides
+	 *            number of sides on each die
+	 * @return the line number, or {@code INVALID}
+	 */
+	public static int decode(int[] faces, int sides) {
+		if (faces == null || faces.length == 0 || sides < 2)
+			return INVALID;
+		
+		long value = 0;
+		for (int i = 0; i < faces.length; i++) {
+			int digit = faces[i] - 1;
+			if (digit < 0 || digit >= sides)
+				return INVALID;
+			value = value * sides + digit;
+			if (value > Integer.MAX_VALUE)
+				return INVALID;
+		}
+		
+		return (int) value;
+	}
+	
+	/**
+	 * Decodes a roll.
+	 * 
+	 * @param faces
+	 *            the face shown by each die, from 1 to {@code sides}
+	 * @param sides
+	 *            number of sides on each die
+	 * @return the line number, or {@code INVALID}
+	 */
+	public static int decode(byte[] faces, int sides) {
+		if (faces == null || faces.length == 0 || sides < 2)
+			return INVALID;
+		
+		long value = 0;
+		for (int i = 0; i < faces.length; i++) {
+			int digit = faces[i] - 1;
+			if (digit < 0 || digit >= sides)
+				return INVALID;
+			value = value * sides + digit;
+			if (value > Integer.MAX_VALUE)
+				return INVALID;
+		}
+		
+		return (int) value;
+	}
+	
+	/**
+	 * Decodes a roll packed by {@code pack}.
+	 * 
+	 * @param packed
+	 *            one byte per die, first die in the lowest byte
+	 * @param count
+	 *            number of dice in the roll, at most 8
+	 * @param sides
+	 *            number of sides on each die
+	 * @return the line number, or {@code INVALID}
+	 */
+	public static int decode(long packed, int count, int sides) {
+		if (count < 1 || count > MAX_PACKED_DICE || sides < 2)
+			return INVALID;
+		
+		long value = 0;
+		for (int i = 0; i < count; i++) {
+			int digit = (int) ((packed >>> (i * BITS_PER_DIE)) & 0xFF) - 1;
+			if (digit < 0 || digit >= sides)
+				return INVALID;
+			value = value * sides + digit;
+			if (value > Integer.MAX_VALUE)
+				return INVALID;
+		}
+		
+		return (int) value;
+	}
+	
+	/**
+	 * Packs up to 8 dice into a single long, one byte per die.
+	 * 
+	 * @param faces
+	 *            the face shown by each die, from 1 to 255
+	 * @return the packed roll, or 0 (which never decodes) if there are too many dice or a face doesn't fit in a byte
+	 */
+	public static long pack(int[] faces) {
+		if (faces == null || faces.length > MAX_PACKED_DICE)
+			return 0;
+		
+		long packed = 0;
+		for (int i = 0; i < faces.length; i++) {
+			if (faces[i] < 0 || faces[i] > 0xFF)
+				return 0;
+			packed |= (long) faces[i] << (i * BITS_PER_DIE);
+		}
+		
+		return packed;
+	}
+	
+	/**
+	 * Returns the number of distinct rolls, and thus the number of lines a dictionary needs.
+	 * 
+	 * @param count
+	 *            number of dice
+	 * @param sides
+	 *            number of sides on each die
+	 * @return {@code sides^count}, or {@code INVALID} if that doesn't fit in an int
+	 */
+	public static int getCardinality(int count, int sides) {
+		if (count < 1 || sides < 2)
+			return INVALID;
+		
+		long cardinality = 1;
+		for (int i = 0; i < count; i++) {
+			cardinality *= sides;
+			if (cardinality > Integer.MAX_VALUE)
+				return INVALID;
+		}
+		
+		return (int) cardinality;
+	}
+}
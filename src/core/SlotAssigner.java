@@ -0,0 +1,83 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import java.util.Random;
+
+/**
+ * Hands out the positions of a passphrase in a random order, so that words can be put in random places as they come in. The order is shuffled once per phrase, so every placement after that
+ * takes the same, constant amount of work, however long the phrase is and however few positions are left.
+ * <p>
+ * Reusable: {@code shuffle} starts a new phrase, reusing the same array if it's big enough.
+ */
+public class SlotAssigner {
+	private final Random	rnd;
+	private int[]			order	= new int[0];
+	private int				size;
+	private int				next;
+	
+	/**
+	 * @param rnd
+	 *            source of the shuffle
+	 */
+	public SlotAssigner(Random rnd) {
+		this.rnd = rnd;
+	}
+	
+	/**
+	 * Starts a new phrase.
+	 * 
+	 * @param size
+	 *            number of positions in the phrase
+	 */
+	public void shuffle(int size) {
+		if (size < 0)
+			throw new IllegalArgumentException("Size cannot be negative");
+		if (order.length < size)
+			order = new int[size];
+		
+		// Fisher-Yates shuffle of 0 to size - 1, filled in as it goes
+		for (int i = 0; i < size; i++) {
+			int pos = rnd.nextInt(i + 1);
+			order[i] = order[pos];
+			order[pos] = i;
+		}
+		
+		this.size = size;
+		this.next = 0;
+	}
+	
+	/**
+	 * @return the next free position.
+	 * @throws IllegalStateException
+	 *             if every position has been handed out
+	 */
+	public int next() {
+		if (next >= size)
+			throw new IllegalStateException("Every slot of the phrase is taken");
+		
+		return order[next++];
+	}
+	
+	/**
+	 * @return number of positions not handed out yet.
+	 */
+	public int remaining() {
+		return size - next;
+	}
+}
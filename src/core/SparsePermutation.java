@@ -0,0 +1,90 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+/**
+ * A permutation of {@code [0, size)} for a partial Fisher-Yates shuffle, which only ever moves a few of its values.
+ * <p>
+ * When there aren't many more values than moves, it's kept as a plain array. Otherwise only the positions that have been moved are stored, in an open-addressed table of primitive ints, so memory
+ * depends on the number of moves rather than the size, and nothing is boxed.
+ */
+final class SparsePermutation {
+	private static final int	DENSE_RATIO	= 4;	// Up to this many values per move, a plain array is smaller than the table
+	
+	private final int[]	dense;	// Every value, or null when sparse
+	private final int[]	keys;	// Moved positions, plus one so that 0 marks an empty slot
+	private final int[]	values;
+	private final int	mask;
+	
+	/**
+	 * @param size
+	 *            number of values. Starts out as the identity permutation.
+	 * @param moves
+	 *            the most calls to {@code swap} that will be made
+	 */
+	SparsePermutation(int size, int moves) {
+		if ((long) size <= (long) DENSE_RATIO * moves) {
+			dense = new int[size];
+			for (int i = 0; i < size; i++)
+				dense[i] = i;
+			keys = null;
+			values = null;
+			mask = 0;
+		} else {
+			int capacity = Integer.highestOneBit(Math.max(2 * moves - 1, 1)) << 1; // At least half empty
+			dense = null;
+			keys = new int[capacity];
+			values = new int[capacity];
+			mask = capacity - 1;
+		}
+	}
+	
+	/**
+	 * One step of the shuffle: swaps the values at {@code i} and {@code j}, and returns the one that ends up at {@code i}. Position {@code i} must not be used again, so its new value isn't stored.
+	 * 
+	 * @param i
+	 * @param j
+	 *            at least {@code i}
+	 * @return the value now at {@code i}
+	 */
+	int swap(int i, int j) {
+		if (dense != null) {
+			int value = dense[j];
+			dense[j] = dense[i];
+			return value;
+		}
+		
+		int slotI = slot(i);
+		int atI = (keys[slotI] != 0) ? values[slotI] : i;
+		int slotJ = slot(j);
+		int value = (keys[slotJ] != 0) ? values[slotJ] : j;
+		keys[slotJ] = j + 1;
+		values[slotJ] = atI;
+		return value;
+	}
+	
+	/**
+	 * @return the slot holding {@code key}, or the empty slot where it would go.
+	 */
+	private int slot(int key) {
+		int h = key * 0x9E3779B9;
+		for (int slot = (h ^ (h >>> 16)) & mask;; slot = (slot + 1) & mask)
+			if (keys[slot] == 0 || keys[slot] == key + 1)
+				return slot;
+	}
+}
@@ -0,0 +1,57 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+/**
+ * Frames from a recorded video, or an image sequence such as {@code img%04d.png}.
+ */
+public class VideoFileSource implements FrameSource {
+	private VideoCapture	vc;
+	private FramePacer		pacer;
+	
+	/**
+	 * @param file
+	 *            Location of the recording
+	 * @param paced
+	 *            true to play the recording back at the speed it was recorded at, false to read frames as fast as they are asked for
+	 */
+	public VideoFileSource(String file, boolean paced) {
+		vc = new VideoCapture(file);
+		pacer = new FramePacer(paced ? vc.get(Videoio.CAP_PROP_FPS) : 0); // Image sequences and some containers report 0, which also means unpaced
+	}
+	
+	@Override
+	public boolean read(Mat frame) {
+		pacer.await();
+		return vc.read(frame);
+	}
+	
+	@Override
+	public boolean isOpened() {
+		return vc.isOpened();
+	}
+	
+	@Override
+	public void close() {
+		vc.release();
+	}
+}
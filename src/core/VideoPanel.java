@@ -28,8 +28,10 @@ import org.opencv.core.Mat;
 public class VideoPanel extends JPanel {
 	private static final long	serialVersionUID	= 258324488913829106L;
 													
-	private BufferedImage		img;
-								
+	private BufferedImage		img;		// The image being shown. Only swapped while holding the panel's lock.
+	private BufferedImage		back;		// The image the next frame is copied into
+	private boolean				ownsImg;	// False if img came from setImage, in which case it mustn't be drawn into
+													
 	public VideoPanel() {
 		super();
 	}
@@ -43,10 +45,12 @@ public class VideoPanel extends JPanel {
 	@Override
 	public void paintComponent(Graphics g) {
 		super.paintComponent(g);
-		if (img != null)
-			g.drawImage(img, 0, 0, img.getWidth(), img.getHeight(), null);
-		else
-			g.drawString("Check video input!", 320 - 50, 240);
+		synchronized (this) { // So the image isn't swapped out and overwritten halfway through drawing it
+			if (img != null)
+				g.drawImage(img, 0, 0, img.getWidth(), img.getHeight(), null);
+			else
+				g.drawString("Check video input!", 320 - 50, 240);
+		}
 	}
 	
 	/**
@@ -54,40 +58,44 @@ public class VideoPanel extends JPanel {
 	 * 
 	 * @param m
 	 *            Matrix
+	 * @see #render(Mat)
 	 */
 	public void paintComponent(Mat m) {
-		if (getGraphics() != null) {
-			setImage(toBufferedImage(m));
-			paintComponent(getGraphics());
-		}
-	}
-	
-	public void setImage(BufferedImage img) {
-		this.img = img;
+		render(m);
 	}
 	
 	/**
-	 * Converts an OpenCV Matrix into an BufferedImage. Used for drawing the image onto the GUI.
+	 * Shows a frame. May be called from any thread, but only one thread at a time.
+	 * <p>
+	 * The panel keeps two images the size of the frame. The frame is copied straight into the pixels of the one that isn't on screen, then the two are swapped and a repaint is requested. Nothing is
+	 * allocated unless the frame size or type changes.
+	 * <p>
 	 * 
 	 * @param m
-	 *            OpenCV Matrix object
-	 * @return Native Java BufferedImage
+	 *            an 8-bit BGR or grayscale matrix, which can be reused as soon as this returns
 	 */
-	private BufferedImage toBufferedImage(Mat m) {
-		if (!m.empty()) {
-			int type = BufferedImage.TYPE_BYTE_GRAY;
-			if (m.channels() > 1) {
-				type = BufferedImage.TYPE_3BYTE_BGR;
-			}
-			int bufferSize = m.channels() * m.cols() * m.rows();
-			byte[] b = new byte[bufferSize];
-			m.get(0, 0, b); // get all the pixels
-			BufferedImage image = new BufferedImage(m.cols(), m.rows(), type);
-			final byte[] targetPixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
-			System.arraycopy(b, 0, targetPixels, 0, b.length);
-			return image;
+	public void render(Mat m) {
+		if (m.empty())
+			return;
+			
+		int type = (m.channels() > 1) ? BufferedImage.TYPE_3BYTE_BGR : BufferedImage.TYPE_BYTE_GRAY;
+		BufferedImage target = back;
+		if (target == null || target.getWidth() != m.cols() || target.getHeight() != m.rows() || target.getType() != type)
+			target = new BufferedImage(m.cols(), m.rows(), type);
+			
+		m.get(0, 0, ((DataBufferByte) target.getRaster().getDataBuffer()).getData()); // The only copy of the pixels
+		
+		synchronized (this) {
+			back = (ownsImg && img.getWidth() == target.getWidth() && img.getHeight() == target.getHeight() && img.getType() == type) ? img : null;
+			img = target;
+			ownsImg = true;
 		}
 		
-		return null;
+		repaint(); // Safe from any thread, and Swing merges repaints that pile up
+	}
+	
+	public synchronized void setImage(BufferedImage img) {
+		this.img = img;
+		ownsImg = false;
 	}
 }
@@ -0,0 +1,40 @@
+/* DicewareGenerator provides a method to generate cryptographically secure passwords via dice.
+ * Copyright (C) 2016 Edward Shen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package core;
+
+/**
+ * A read-only, indexed list of words. Word n is the n-th line of the dictionary it was read from.
+ */
+public interface WordList {
+	
+	/**
+	 * Gets a word from the dictionary.
+	 * 
+	 * @param index
+	 *            zero-based line number
+	 * @return the word found.
+	 */
+	public String getWord(int index);
+	
+	/**
+	 * Returns the number of words in the dictionary.
+	 * 
+	 * @return the number of words.
+	 */
+	public int size();
+}